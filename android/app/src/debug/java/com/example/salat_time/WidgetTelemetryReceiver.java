@@ -0,0 +1,32 @@
+package com.example.salat_time;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+import com.example.salat_time.core.Telemetry;
+
+/**
+ * Debug builds only: dumps widget telemetry to logcat and persists it.
+ *
+ * adb shell am broadcast -a com.example.salat_time.DEBUG_WIDGET_TELEMETRY -n com.example.salat_time/.WidgetTelemetryReceiver
+ * Add --ez reset true to clear the counters after the dump.
+ */
+public class WidgetTelemetryReceiver extends BroadcastReceiver {
+
+    static final String ACTION_DUMP = "com.example.salat_time.DEBUG_WIDGET_TELEMETRY";
+    static final String EXTRA_RESET = "reset";
+
+    @Override
+    public void onReceive(Context context, Intent intent) {
+        if (!ACTION_DUMP.equals(intent.getAction())) return;
+        Telemetry telemetry = WidgetTelemetry.get(context);
+        long nowMs = WidgetTime.clock().currentTimeMillis();
+        Log.i("Widget", "Telemetry: " + telemetry.toJson());
+        Log.i("Widget", "Tick p50<" + telemetry.quantileUpperBound(Telemetry.TICK_MICROS, 0.5)
+                + "us p99<" + telemetry.quantileUpperBound(Telemetry.TICK_MICROS, 0.99)
+                + "us, refresh p99<" + telemetry.quantileUpperBound(Telemetry.REFRESH_MILLIS, 0.99) + "ms");
+        if (intent.getBooleanExtra(EXTRA_RESET, false)) telemetry.reset(nowMs);
+        WidgetTelemetry.persist(context, nowMs, true);
+    }
+}
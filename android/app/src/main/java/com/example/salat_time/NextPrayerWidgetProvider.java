@@ -1,27 +1,42 @@
 package com.example.salat_time;
 
-import android.app.AlarmManager;
-import android.app.PendingIntent;
 import android.appwidget.AppWidgetManager;
 import android.appwidget.AppWidgetProvider;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.util.Log;
-import android.os.SystemClock;
-import android.text.format.DateUtils;
-import android.widget.RemoteViews;
-import org.json.JSONObject;
-import java.io.BufferedReader;
+import com.example.salat_time.core.CalendarParser;
+import com.example.salat_time.core.NextPrayerTracker;
+import com.example.salat_time.core.PrayerSchedule;
+import com.example.salat_time.core.PrayerTimesCalculator;
+import com.example.salat_time.core.PrayerTimesFetcher;
+import com.example.salat_time.core.RenderPlanner;
+import com.example.salat_time.core.CountdownText;
+import com.example.salat_time.core.ScheduleCache;
+import com.example.salat_time.core.SingleFlight;
+import com.example.salat_time.core.Telemetry;
+import com.example.salat_time.core.WidgetClock;
+import com.example.salat_time.core.WidgetSnapshot;
+import com.example.salat_time.core.WidgetTick;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
-import java.text.SimpleDateFormat;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Random;
+import java.util.TimeZone;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 // TODO: FIX WIDGET NEXT PRAYER LOGIC - Widget still showing wrong prayer (Fajr instead of current next prayer)
 // Issues to investigate:
@@ -34,364 +49,602 @@ import java.util.Map;
 // 7. Consider simplifying to use only Dart-side computation and Java just displays cached results
 public class NextPrayerWidgetProvider extends AppWidgetProvider {
 
-    private static final String PREFS_NAME = "HomeWidgetPreferences"; // used by home_widget plugin
-    private static final String KEY_NAME = "widget_next_prayer_name";
-    private static final String KEY_COUNTDOWN = "widget_next_prayer_countdown";
-    private static final String KEY_EPOCH = "widget_next_prayer_epoch"; // string millis
-    private static final String KEY_TIMES_JSON = "widget_times_json"; // JSON of adjusted times HH:mm
-    private static final String ACTION_TICK = "com.example.salat_time.ACTION_WIDGET_TICK";
-    private static final String FLUTTER_PREFS = "FlutterSharedPreferences";
+    // Release goAsync() before the broadcast timeout even if a fetch is still running
+    private static final long REFRESH_BROADCAST_BUDGET_MS = 9_000L;
+    // What onReceive may cost on the main thread; everything else runs on WidgetWorker
+    static final long MAIN_THREAD_BUDGET_US = 1_000L;
+
+    // Parsed schedule plus cursor, countdown text and text timelines reused across ticks
+    private static final WidgetTick TICK = new WidgetTick();
+    private static final NextPrayerTracker TRACKER = TICK.tracker();
+    // Text of the last shown target while the app's widgets have no schedule
+    private static final CountdownText SHOWN_COUNTDOWN = new CountdownText();
+
+    // Offset-free schedules per geo-cell, method and date, shared by every widget in the cell
+    private static final int MAX_CACHED_CELLS = 8;
+    private static final ScheduleCache SCHEDULES = new ScheduleCache(MAX_CACHED_CELLS);
+    // Per-widget schedules derived from SCHEDULES, for widgets with a config of their own
+    private static final Map<Integer, PrayerSchedule> WIDGET_SCHEDULES = new HashMap<>();
+    // Their countdown texts, guarded by WIDGET_SCHEDULES
+    private static final Map<Integer, CountdownText> WIDGET_COUNTDOWNS = new HashMap<>();
+    private static final int[] NO_OFFSETS = new int[PrayerTimesCalculator.PRAYER_COUNT];
+
+    // One worker shared by every widget instance; refreshes are queued, never run in parallel
+    private static final ThreadPoolExecutor REFRESH_EXECUTOR = newRefreshExecutor();
+    private static final SingleFlight<String, PrayerSchedule> REFRESHES = new SingleFlight<>(REFRESH_EXECUTOR);
+
+    // A month's timings for a fixed place and method do not change; revalidate weekly at most
+    private static final long FETCH_MAX_AGE_MS = 7 * 24 * 60 * 60_000L;
+    private static PrayerTimesFetcher fetcher;
+
+    // This broadcast's goAsync() result until the worker finishes it or a refresh takes it over
+    private PendingResult pending;
 
     @Override
     public void onUpdate(Context context, AppWidgetManager appWidgetManager, int[] appWidgetIds) {
-        for (int widgetId : appWidgetIds) {
-            updateAppWidget(context, appWidgetManager, widgetId);
-        }
-        scheduleNextTick(context);
+        // The host asked for these widgets, so it may have lost their layout and click wiring
+        WidgetRenderer.forget(appWidgetIds);
+        // Widgets restored from a backup never see onEnabled
+        WidgetPrefetchJob.scheduleDaily(context);
+        updateWidgets(context, appWidgetManager, appWidgetIds);
+    }
+
+    @Override
+    public void onDeleted(Context context, int[] appWidgetIds) {
+        forgetWidgets(appWidgetIds);
+        WidgetConfigs.remove(context, appWidgetIds);
     }
 
     @Override
     public void onEnabled(Context context) {
+        WidgetPrefetchJob.scheduleDaily(context);
         scheduleNextTick(context);
     }
 
     @Override
     public void onDisabled(Context context) {
-        cancelTick(context);
+        WidgetAlarmScheduler.cancel(context);
+        WidgetPrefetchJob.cancel(context);
     }
 
+    /**
+     * Only hands the broadcast to {@link WidgetWorker}: the receiver returns after goAsync()
+     * and one post, and the main-thread time that took is recorded against
+     * {@link #MAIN_THREAD_BUDGET_US}. onUpdate, onDeleted and the rest run on the worker. The
+     * first broadcast of a new process that renders also draws the last shown prayer first,
+     * see {@link #showLastShown}.
+     */
     @Override
     public void onReceive(Context context, Intent intent) {
-        super.onReceive(context, intent);
+        long startNs = System.nanoTime();
+        Context app = context.getApplicationContext();
+        PendingResult result = goAsync();
+        String action = intent.getAction();
+        if (!WidgetRenderer.hasRendered()
+                && (isTick(action) || AppWidgetManager.ACTION_APPWIDGET_UPDATE.equals(action))) {
+            showLastShown(app);
+        }
+        WidgetWorker.post(() -> handle(app, intent, result));
+        long mainUs = (System.nanoTime() - startNs) / 1000;
+        // Recorded on the worker too: the first telemetry access reads its snapshot from disk
+        WidgetWorker.post(() -> recordMainThread(app, action, mainUs));
+    }
+
+    /**
+     * Draws the prayer stored as last shown before the worker has read the whole snapshot, so
+     * a host that lost the widget's views while the process was dead does not stay blank
+     * behind a cold start. Costs a header read and two Binder calls. Skipped once that prayer
+     * has passed, and while any widget has a config of its own, whose prayer it would not be.
+     */
+    private static void showLastShown(Context context) {
+        WidgetSnapshot header = SnapshotStore.header(context);
+        long nowMs = WidgetTime.clock().currentTimeMillis();
+        if (header == null || header.shownPrayer() == WidgetSnapshot.NO_PRAYER
+                || header.shownTarget() - PrayerSchedule.NEXT_BUFFER_MS <= nowMs
+                || !WidgetConfigs.noneStored(context)) {
+            return;
+        }
+        AppWidgetManager mgr = AppWidgetManager.getInstance(context);
+        int[] ids = mgr.getAppWidgetIds(new android.content.ComponentName(context, NextPrayerWidgetProvider.class));
+        long target = header.shownTarget();
+        String countdown = WidgetAlarmScheduler.hasSystemCountdown() ? null : RenderPlanner.format(target - nowMs);
+        WidgetRenderer.renderCold(context, mgr, ids, SnapshotStore.prayerName(header.shownPrayer()), countdown,
+                target, nowMs);
+    }
+
+    private void handle(Context context, Intent intent, PendingResult result) {
+        pending = result;
+        try {
+            super.onReceive(context, intent);
+            handleTick(context, intent);
+        } finally {
+            if (pending != null) pending.finish();
+            pending = null;
+        }
+    }
+
+    private static void recordMainThread(Context context, String action, long mainUs) {
+        Telemetry telemetry = WidgetTelemetry.get(context);
+        telemetry.record(Telemetry.RECEIVE_MAIN_MICROS, mainUs);
+        if (mainUs > MAIN_THREAD_BUDGET_US) {
+            telemetry.increment(Telemetry.RECEIVE_OVER_BUDGET);
+            Log.w("Widget", action + " took " + mainUs + "us on the main thread (budget "
+                    + MAIN_THREAD_BUDGET_US + "us)");
+        }
+    }
+
+    // Runs on the worker; renders from what is already stored first, and only then re-arms or refreshes
+    private void handleTick(Context context, Intent intent) {
         String action = intent.getAction();
-        if (ACTION_TICK.equals(action)
+        if (isTick(action)) {
+            if (Intent.ACTION_TIMEZONE_CHANGED.equals(action)) {
+                // Epochs were built for the old zone's wall clock
+                invalidateSchedule(context);
+            }
+            AppWidgetManager mgr = AppWidgetManager.getInstance(context);
+            int[] ids = mgr.getAppWidgetIds(new android.content.ComponentName(context, NextPrayerWidgetProvider.class));
+            updateWidgets(context, mgr, ids);
+            if (WidgetAlarmScheduler.ACTION_TICK.equals(action)
+                    && intent.getBooleanExtra(WidgetAlarmScheduler.EXTRA_WAKEUP, false)) {
+                WidgetTelemetry.recordWakeup(context, WidgetTime.clock().currentTimeMillis());
+            }
+        }
+    }
+
+    private static boolean isTick(String action) {
+        return WidgetAlarmScheduler.ACTION_TICK.equals(action)
                 || Intent.ACTION_TIME_TICK.equals(action)
                 || Intent.ACTION_TIME_CHANGED.equals(action)
                 || Intent.ACTION_TIMEZONE_CHANGED.equals(action)
                 || Intent.ACTION_DATE_CHANGED.equals(action)
-                || Intent.ACTION_BOOT_COMPLETED.equals(action)) {
-            AppWidgetManager mgr = AppWidgetManager.getInstance(context);
-            int[] ids = mgr.getAppWidgetIds(new android.content.ComponentName(context, NextPrayerWidgetProvider.class));
-            for (int id : ids) {
-                updateAppWidget(context, mgr, id);
-            }
+                || Intent.ACTION_BOOT_COMPLETED.equals(action);
+    }
+
+    private void updateWidgets(Context context, AppWidgetManager mgr, int[] ids) {
+        if (ids.length == 0) {
+            scheduleNextTick(context);
+            return;
+        }
+        long startNs = System.nanoTime();
+        List<WidgetSettings> stale = updateAppWidgets(context, mgr, ids);
+        Telemetry telemetry = WidgetTelemetry.get(context);
+        telemetry.increment(Telemetry.TICKS);
+        telemetry.record(Telemetry.TICK_MICROS, (System.nanoTime() - startNs) / 1000);
+        WidgetTelemetry.persist(context, WidgetTime.clock().currentTimeMillis(), false);
+        if (!stale.isEmpty()) {
+            requestRefresh(context, stale);
+        } else {
             scheduleNextTick(context);
         }
     }
 
+    // One alarm at the next prayer switch or midnight (of any widget) instead of a fixed one-minute tick
     private static void scheduleNextTick(Context context) {
-        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        Intent i = new Intent(context, NextPrayerWidgetProvider.class).setAction(ACTION_TICK);
-        PendingIntent pi = PendingIntent.getBroadcast(context, 0, i, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_CANCEL_CURRENT);
-        long triggerAt = SystemClock.elapsedRealtime() + DateUtils.MINUTE_IN_MILLIS; // in 1 minute
-        if (am != null) {
-            am.setExactAndAllowWhileIdle(AlarmManager.ELAPSED_REALTIME_WAKEUP, triggerAt, pi);
+        PrayerSchedule shared = loadSchedule(context);
+        PrayerSchedule[] schedules;
+        synchronized (WIDGET_SCHEDULES) {
+            schedules = new PrayerSchedule[WIDGET_SCHEDULES.size() + 1];
+            int i = 0;
+            schedules[i++] = shared;
+            for (PrayerSchedule s : WIDGET_SCHEDULES.values()) schedules[i++] = s;
         }
+        WidgetClock clock = WidgetTime.clock();
+        long alarmMs = TICK.planAlarm(schedules, clock.currentTimeMillis(), clock.zone(),
+                WidgetAlarmScheduler.hasSystemCountdown());
+        WidgetAlarmScheduler.scheduleNext(context, alarmMs, TICK.alarmWakes());
     }
 
-    private static void cancelTick(Context context) {
-        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
-        Intent i = new Intent(context, NextPrayerWidgetProvider.class).setAction(ACTION_TICK);
-        PendingIntent pi = PendingIntent.getBroadcast(context, 0, i, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_CANCEL_CURRENT);
-        if (am != null) {
-            am.cancel(pi);
+    /**
+     * Rebuilds schedules off the main thread. Broadcast storms (boot plus date change,
+     * several widgets updating at once) collapse into one flight per location, method and
+     * date, and widgets with their own config into one per cell; the broadcast stays alive
+     * with goAsync() until every flight it started or joined has landed. Schedules that need
+     * the API are left to {@link WidgetPrefetchJob}, so a broadcast never waits on the network.
+     */
+    private void requestRefresh(Context context, List<WidgetSettings> targets) {
+        Context app = context.getApplicationContext();
+        // The flights finish the broadcast now, not the worker
+        PendingResult owned = pending;
+        pending = null;
+        AtomicBoolean finished = new AtomicBoolean();
+        Runnable finish = () -> {
+            if (owned != null && finished.compareAndSet(false, true)) owned.finish();
+        };
+        WidgetWorker.postDelayed(finish, REFRESH_BROADCAST_BUDGET_MS);
+        if (refreshOrDefer(app, targets, finish) == 0) finish.run();
+    }
+
+    /**
+     * Starts or joins a refresh for each target, except API-method targets while the
+     * catch-up job can take them. {@code done} runs once every started or joined flight has
+     * landed; it is not run when this returns 0.
+     *
+     * @return how many flights were started or joined
+     */
+    private static int refreshOrDefer(Context app, List<WidgetSettings> targets, Runnable done) {
+        List<WidgetSettings> inline = new ArrayList<>(targets.size());
+        boolean deferred = false;
+        for (WidgetSettings settings : targets) {
+            if (!PrayerTimesCalculator.supportsMethod(settings.method) && WidgetPrefetchJob.scheduleCatchUp(app)) {
+                WidgetTelemetry.get(app).increment(Telemetry.REFRESH_DEFERRED);
+                Log.d("Widget", "Schedule for method " + settings.method + " needs the API; deferred to prefetch job");
+                deferred = true;
+            } else {
+                inline.add(settings);
+            }
         }
+        if (deferred) scheduleNextTick(app);
+        AtomicInteger remaining = new AtomicInteger(inline.size());
+        for (WidgetSettings settings : inline) {
+            startRefresh(app, settings, WidgetTick.MIN_DAYS_AHEAD, (schedule, error) -> {
+                if (error != null) Log.w("Widget", "Background refresh failed", error);
+                if (remaining.decrementAndGet() == 0) done.run();
+            });
+        }
+        return inline.size();
     }
 
-    public static void updateAppWidget(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-    String nextPrayer = prefs.getString(KEY_NAME, null);
-    String countdownStored = prefs.getString(KEY_COUNTDOWN, null);
-    String epochStr = prefs.getString(KEY_EPOCH, null);
-        String timesJson = prefs.getString(KEY_TIMES_JSON, null);
-    Log.d("Widget", "updateAppWidget: name=" + nextPrayer + " epoch=" + epochStr + " countdown=" + countdownStored);
+    /**
+     * Starts, or joins, the refresh for these settings and today's date on the refresh
+     * executor. An API schedule covers at least {@code minDaysAhead} days once it lands.
+     */
+    static boolean startRefresh(Context app, WidgetSettings settings, int minDaysAhead,
+                                SingleFlight.Callback<PrayerSchedule> callback) {
+        String key = settings.refreshKey(WidgetTime.clock().currentTimeMillis(), WidgetTime.clock().zone());
+        boolean started = REFRESHES.execute(key, () -> refreshSchedule(app, settings, minDaysAhead), callback);
+        WidgetTelemetry.get(app).increment(started ? Telemetry.REFRESH_STARTED : Telemetry.REFRESH_JOINED);
+        Log.d("Widget", (started ? "Started" : "Joined") + " refresh " + key);
+        return started;
+    }
 
-        if (nextPrayer == null) nextPrayer = "-";
+    /**
+     * Settings of every widget whose schedule covers fewer than {@code minDaysAhead} days:
+     * the app's (when it has a location) and each widget config whose cell is not cached.
+     */
+    static List<WidgetSettings> prefetchTargets(Context context, long nowMs, int minDaysAhead) {
+        List<WidgetSettings> targets = new ArrayList<>();
+        WidgetSnapshot snapshot = SnapshotStore.get(context);
+        WidgetSettings shared = WidgetSettings.of(snapshot);
+        if (shared != null && !WidgetTick.covers(snapshot.schedule(), nowMs, minDaysAhead)) targets.add(shared);
+        TimeZone zone = WidgetTime.clock().zone();
+        for (Map.Entry<Integer, WidgetSnapshot> e : WidgetConfigs.all(context).entrySet()) {
+            WidgetSettings own = WidgetSettings.of(e.getValue(), e.getKey());
+            if (own != null && !WidgetTick.covers(SCHEDULES.get(own.cellKey(nowMs, zone)), nowMs, minDaysAhead)) targets.add(own);
+        }
+        return targets;
+    }
 
-    String countdown = countdownStored;
-        boolean needRefresh = false;
-        // If we have adjusted times, recompute next from them to avoid stale state
-        if (timesJson != null) {
-            try {
-                org.json.JSONObject obj = new org.json.JSONObject(timesJson);
-                long nowMs = System.currentTimeMillis();
-                java.util.Calendar nowCal = java.util.Calendar.getInstance();
-                int y = nowCal.get(java.util.Calendar.YEAR);
-                int mo = nowCal.get(java.util.Calendar.MONTH);
-                int d = nowCal.get(java.util.Calendar.DAY_OF_MONTH);
-                long bestEpoch = -1;
-                String bestName = null;
-                for (String p : new String[]{"Fajr","Dhuhr","Asr","Maghrib","Isha"}) {
-                    if (!obj.has(p)) continue;
-                    String t = obj.optString(p, null);
-                    if (t == null) continue;
-                    String[] parts = t.split(":");
-                    if (parts.length < 2) continue;
-                    int h = Integer.parseInt(parts[0].replaceAll("[^0-9]", ""));
-                    int m = Integer.parseInt(parts[1].replaceAll("[^0-9]", ""));
-                    java.util.Calendar c = java.util.Calendar.getInstance();
-                    c.set(y, mo, d, h, m, 0);
-                    c.set(java.util.Calendar.MILLISECOND, 0);
-                    long epoch = c.getTimeInMillis();
-                    if (epoch > nowMs + 30000) { // 30s buffer
-                        bestEpoch = epoch;
-                        bestName = p;
-                        break;
-                    }
-                }
-                if (bestName == null && obj.has("Fajr")) {
-                    String t = obj.optString("Fajr", null);
-                    if (t != null) {
-                        String[] parts = t.split(":");
-                        if (parts.length >= 2) {
-                            int h = Integer.parseInt(parts[0].replaceAll("[^0-9]", ""));
-                            int m = Integer.parseInt(parts[1].replaceAll("[^0-9]", ""));
-                            java.util.Calendar c = java.util.Calendar.getInstance();
-                            c.set(y, mo, d, h, m, 0);
-                            c.add(java.util.Calendar.DAY_OF_MONTH, 1);
-                            c.set(java.util.Calendar.MILLISECOND, 0);
-                            bestEpoch = c.getTimeInMillis();
-                            bestName = "Fajr";
-                        }
-                    }
-                }
-                if (bestName != null && bestEpoch > 0) {
-                    long diff = Math.max(0, bestEpoch - nowMs);
-                    long hours = diff / (1000 * 60 * 60);
-                    long minutes = (diff / (1000 * 60)) % 60;
-                    long seconds = (diff / 1000) % 60;
-                    countdown = String.format(java.util.Locale.US, "%02d:%02d:%02d", hours, minutes, seconds);
-                    nextPrayer = bestName;
-                    epochStr = Long.toString(bestEpoch);
-                    // Persist updated epoch and countdown so next tick continues smoothly
-                    prefs.edit().putString(KEY_NAME, bestName)
-                            .putString(KEY_EPOCH, epochStr)
-                            .putString(KEY_COUNTDOWN, countdown)
-                            .apply();
-                } else {
-                    needRefresh = true; // fallback to background refresh
+    /**
+     * Renders current state to every widget and re-arms the alarm, after the app pushed a
+     * snapshot, changed a widget's config or a refresh landed. A widget left without a
+     * schedule gets a refresh (or a catch-up job for API methods), like on a tick. Runs on
+     * {@link WidgetWorker}.
+     */
+    static void onSnapshotPushed(Context context) {
+        AppWidgetManager mgr = AppWidgetManager.getInstance(context);
+        int[] ids = mgr.getAppWidgetIds(new android.content.ComponentName(context, NextPrayerWidgetProvider.class));
+        List<WidgetSettings> stale = ids.length > 0
+                ? updateAppWidgets(context, mgr, ids) : Collections.<WidgetSettings>emptyList();
+        scheduleNextTick(context);
+        if (!stale.isEmpty()) refreshOrDefer(context.getApplicationContext(), stale, () -> {});
+    }
+
+    /**
+     * Computes the next prayer once for the widgets that follow the app and once per widget
+     * with its own config, and renders each.
+     *
+     * @return settings whose schedule is missing or about to run out; empty when none
+     */
+    static List<WidgetSettings> updateAppWidgets(Context context, AppWidgetManager appWidgetManager,
+                                                 int[] appWidgetIds) {
+        long nowMs = WidgetTime.clock().currentTimeMillis();
+        List<WidgetSettings> stale = Collections.emptyList();
+        int[] sharedIds = appWidgetIds;
+        if (!WidgetConfigs.isEmpty(context)) {
+            TimeZone zone = WidgetTime.clock().zone();
+            int configured = 0;
+            for (int id : appWidgetIds) {
+                WidgetSettings own = WidgetSettings.of(WidgetConfigs.get(context, id), id);
+                if (own == null) continue;
+                configured++;
+                if (!renderOwn(context, appWidgetManager, own, nowMs, zone)) {
+                    if (stale.isEmpty()) stale = new ArrayList<>();
+                    stale.add(own);
                 }
-            } catch (Exception e) {
-                needRefresh = true;
             }
+            if (configured > 0) sharedIds = sharedIds(context, appWidgetIds);
         }
-        if (epochStr != null) {
-            try {
-                long target = Long.parseLong(epochStr);
-                long now = System.currentTimeMillis();
-                long diff = Math.max(0, target - now);
-                long hours = diff / (1000 * 60 * 60);
-                long minutes = (diff / (1000 * 60)) % 60;
-                long seconds = (diff / 1000) % 60;
-                countdown = String.format("%02d:%02d:%02d", hours, minutes, seconds);
-                // If we've hit zero, mark to refresh data on next tick
-                if (diff == 0) {
-                    needRefresh = true;
-                }
-            } catch (Exception ignored) { }
+        if (sharedIds.length == 0) return stale;
+
+        String nextPrayer;
+        String countdown;
+        long target = -1;
+        boolean needRefresh;
+
+        // The app bumps the snapshot generation whenever location, method or offsets change,
+        // and a schedule stamped with an older generation is not offered at all
+        WidgetSnapshot snapshot = loadSnapshot(context);
+        if (snapshot != null && TICK.update(nowMs, snapshot.generation())) {
+            nextPrayer = PrayerTimesCalculator.PRAYER_NAMES[TRACKER.prayer()];
+            target = TRACKER.target();
+            // The Chronometer draws the countdown itself, so skip building the text
+            countdown = WidgetAlarmScheduler.hasSystemCountdown() ? null : TRACKER.countdownText();
+            // Top the window up before it runs out
+            needRefresh = TICK.needsRefresh();
+            // What a new process draws before it has read the schedule again
+            if (target != snapshot.shownTarget()) SnapshotStore.recordShown(context, TRACKER.prayer(), target);
         } else {
-            // No epoch stored; trigger a refresh
+            // No usable schedule yet: show what was last shown until the refresh lands
             needRefresh = true;
-            Log.d("Widget", "No epoch stored; scheduling background refresh");
+            nextPrayer = snapshot != null ? SnapshotStore.prayerName(snapshot.shownPrayer()) : "-";
+            if (snapshot != null) target = snapshot.shownTarget();
+            countdown = target > 0 ? SHOWN_COUNTDOWN.of(target - nowMs) : "--:--:--";
+        }
+
+        WidgetRenderer.render(context, appWidgetManager, sharedIds, nextPrayer, countdown, target, nowMs);
+        WidgetSettings shared = needRefresh ? WidgetSettings.of(snapshot) : null;
+        if (shared == null) {
+            if (needRefresh) Log.d("Widget", "No location in widget snapshot; skip background refresh");
+            return stale;
+        }
+        if (stale.isEmpty()) return Collections.singletonList(shared);
+        stale.add(shared);
+        return stale;
+    }
+
+    // Renders a widget with its own config; returns false when its schedule needs a refresh
+    private static boolean renderOwn(Context context, AppWidgetManager mgr, WidgetSettings settings,
+                                     long nowMs, TimeZone zone) {
+        PrayerSchedule schedule = widgetSchedule(settings, nowMs, zone);
+        int idx = schedule != null ? schedule.indexOfNext(nowMs) : -1;
+        int[] ids = {settings.widgetId};
+        if (idx < 0) {
+            WidgetRenderer.render(context, mgr, settings.widgetId, ids, "-", "--:--:--", -1, nowMs);
+            return false;
+        }
+        long target = schedule.epochAt(idx);
+        String countdown = WidgetAlarmScheduler.hasSystemCountdown() ? null
+                : widgetCountdown(settings.widgetId).of(target - nowMs);
+        WidgetRenderer.render(context, mgr, settings.widgetId, ids,
+                PrayerTimesCalculator.PRAYER_NAMES[schedule.prayerAt(idx)], countdown, target, nowMs);
+        return schedule.daysRemainingAfter(idx) >= WidgetTick.MIN_DAYS_AHEAD;
+    }
+
+    /**
+     * The widget's schedule: its cell's shared schedule with its own offsets applied. The
+     * result is kept per widget until its config, the zone or the cell's entry changes.
+     */
+    private static PrayerSchedule widgetSchedule(WidgetSettings settings, long nowMs, TimeZone zone) {
+        long key = settings.scheduleKey(zone);
+        synchronized (WIDGET_SCHEDULES) {
+            PrayerSchedule own = WIDGET_SCHEDULES.get(settings.widgetId);
+            if (own != null && (own.settingsStamp() != settings.generation || own.key() != key)) own = null;
+            if (WidgetTick.covers(own, nowMs, WidgetTick.MIN_DAYS_AHEAD)) return own;
+            PrayerSchedule shared = SCHEDULES.get(settings.cellKey(nowMs, zone));
+            if (shared == null) return own;
+            try {
+                own = shared.withOffsets(NO_OFFSETS, settings.offsets, key, settings.generation);
+            } catch (IllegalArgumentException e) {
+                // Offsets that swap two prayers: show nothing rather than a wrong order
+                Log.w("Widget", "Widget " + settings.widgetId + " offsets rejected", e);
+                return null;
+            }
+            WIDGET_SCHEDULES.put(settings.widgetId, own);
+            return own;
+        }
+    }
+
+    private static CountdownText widgetCountdown(int widgetId) {
+        synchronized (WIDGET_SCHEDULES) {
+            CountdownText text = WIDGET_COUNTDOWNS.get(widgetId);
+            if (text == null) {
+                text = new CountdownText();
+                WIDGET_COUNTDOWNS.put(widgetId, text);
+            }
+            return text;
+        }
+    }
+
+    // Derives every configured widget in the settings' cell now, before another cell can evict it
+    private static void deriveCell(WidgetSettings settings, TimeZone zone, long nowMs, Context context) {
+        long cell = settings.cellKey(nowMs, zone);
+        for (Map.Entry<Integer, WidgetSnapshot> e : WidgetConfigs.all(context).entrySet()) {
+            WidgetSettings own = WidgetSettings.of(e.getValue(), e.getKey());
+            if (own != null && own.cellKey(nowMs, zone) == cell) widgetSchedule(own, nowMs, zone);
+        }
+    }
+
+
+    // Widgets without a config of their own, i.e. the ones showing the app's settings
+    private static int[] sharedIds(Context context, int[] ids) {
+        int n = 0;
+        for (int id : ids) if (WidgetConfigs.get(context, id) == null) n++;
+        int[] out = new int[n];
+        int j = 0;
+        for (int id : ids) if (WidgetConfigs.get(context, id) == null) out[j++] = id;
+        return out;
+    }
+
+    /** Forgets what was derived for these widgets, after their config changed or they were removed. */
+    static void forgetWidgets(int[] appWidgetIds) {
+        synchronized (WIDGET_SCHEDULES) {
+            for (int id : appWidgetIds) {
+                WIDGET_SCHEDULES.remove(id);
+                WIDGET_COUNTDOWNS.remove(id);
+            }
         }
-        if (countdown == null) countdown = "--:--:--";
+        WidgetRenderer.forget(appWidgetIds);
+    }
+
+    private static void invalidateSchedule(Context context) {
+        TRACKER.invalidate();
+        SnapshotStore.dropSchedule(context, WidgetTime.clock().currentTimeMillis());
+    }
 
-        // Heuristic: if it's showing Fajr as next but it's well into the day, force a refresh
+    // Hands the snapshot's schedule to the tracker when the file was replaced since the last tick
+    private static WidgetSnapshot loadSnapshot(Context context) {
+        WidgetSnapshot snapshot = SnapshotStore.get(context);
+        PrayerSchedule schedule = snapshot != null ? snapshot.schedule() : null;
+        if (schedule != TRACKER.schedule()) TRACKER.setSchedule(schedule);
+        return snapshot;
+    }
+
+    private static PrayerSchedule loadSchedule(Context context) {
+        loadSnapshot(context);
+        return TRACKER.schedule();
+    }
+
+    private static ThreadPoolExecutor newRefreshExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(8), r -> {
+                    Thread t = new Thread(r, "widget-refresh");
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * For the app's settings, builds the schedule at the exact location, stores it in the
+     * snapshot and fans it out to every widget that follows the app. For a widget with its
+     * own config, brings its cell's shared schedule up to date and redraws from the cell
+     * cache. Runs on the refresh executor.
+     */
+    private static PrayerSchedule refreshSchedule(Context context, WidgetSettings settings,
+                                                  int minDaysAhead) throws Exception {
+        Telemetry telemetry = WidgetTelemetry.get(context);
+        long startMs = WidgetTime.clock().elapsedRealtime();
         try {
-            if ("Fajr".equalsIgnoreCase(nextPrayer)) {
-                java.util.Calendar nowCal = java.util.Calendar.getInstance();
-                int hour = nowCal.get(java.util.Calendar.HOUR_OF_DAY);
-                // If it's between 8 AM and 11 PM and still showing Fajr, something is wrong
-                if (hour >= 8 && hour <= 23) {
-                    needRefresh = true;
-                    Log.d("Widget", "Heuristic refresh: Showing Fajr during daytime");
-                }
+            PrayerSchedule schedule;
+            if (settings.isGlobal()) {
+                schedule = buildAndPublishSchedule(context, settings, minDaysAhead);
+            } else {
+                schedule = sharedSchedule(context, settings, WidgetTime.clock().zone(), WidgetTime.clock().currentTimeMillis(),
+                        minDaysAhead);
+                deriveCell(settings, WidgetTime.clock().zone(), WidgetTime.clock().currentTimeMillis(), context);
+                WidgetWorker.post(() -> onSnapshotPushed(context));
             }
-        } catch (Exception ignored) {}
-
-        RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_next_prayer);
-        views.setTextViewText(R.id.tv_prayer_name, nextPrayer);
-        views.setTextViewText(R.id.tv_countdown, countdown);
-
-        Intent intent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
-        if (intent != null) {
-            PendingIntent pendingIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
-            views.setOnClickPendingIntent(R.id.tv_title, pendingIntent);
-            views.setOnClickPendingIntent(R.id.tv_prayer_name, pendingIntent);
-            views.setOnClickPendingIntent(R.id.tv_countdown, pendingIntent);
+            telemetry.increment(schedule != null ? Telemetry.REFRESH_OK : Telemetry.FAIL_OTHER);
+            return schedule;
+        } catch (Exception e) {
+            WidgetTelemetry.recordFailure(context, e);
+            throw e;
+        } finally {
+            telemetry.record(Telemetry.REFRESH_MILLIS, WidgetTime.clock().elapsedRealtime() - startMs);
+            WidgetTelemetry.persist(context, WidgetTime.clock().currentTimeMillis(), true);
+            // Re-arm even when the refresh failed so the retry interval applies
+            WidgetWorker.post(() -> scheduleNextTick(context));
         }
+    }
 
-        appWidgetManager.updateAppWidget(appWidgetId, views);
+    private static PrayerSchedule buildAndPublishSchedule(Context context, WidgetSettings settings,
+                                                         int minDaysAhead) throws Exception {
+        Log.d("Widget", "refreshData: lat=" + settings.lat + " lon=" + settings.lon + " method=" + settings.method);
+        int stamp = settings.generation;
+        long nowMs = WidgetTime.clock().currentTimeMillis();
+        TimeZone zone = WidgetTime.clock().zone();
+        // The app's own times, so the widget agrees with the app to the minute; only widgets
+        // with their own config share a cell's schedule
+        PrayerSchedule schedule = PrayerTimesCalculator.supportsMethod(settings.method)
+                ? PrayerSchedule.compute(settings.lat, settings.lon, settings.method, settings.offsets,
+                        zone, nowMs, PrayerSchedule.DEFAULT_DAYS, stamp)
+                : fetchScheduleFromApi(context, settings, zone, nowMs, minDaysAhead, stamp);
+        // Settings, schedule and the prayer about to be shown land in one atomic write; a
+        // snapshot replaced since the refresh was requested belongs to newer settings
+        WidgetSnapshot snapshot = SnapshotStore.get(context);
+        if (snapshot == null || snapshot.generation() != stamp
+                || !SnapshotStore.publish(context, snapshot.withSchedule(schedule, nowMs))) {
+            return schedule;
+        }
+        Log.d("Widget", "Published " + schedule.days() + " days for generation " + stamp);
+        // The tracker and every render belong to the worker
+        WidgetWorker.post(() -> onSnapshotPushed(context));
+        return schedule;
+    }
 
-        // If we need fresh data (epoch missing or expired), try to recompute in background
-    if (needRefresh) {
-            refreshDataInBackground(context, appWidgetManager, appWidgetId);
+    /**
+     * The offset-free schedule for the centre of the settings' cell: from the cache while it
+     * still covers {@code minDaysAhead} days, otherwise computed (or, for methods the engine
+     * does not cover, fetched) once and cached for every widget in the cell.
+     */
+    private static PrayerSchedule sharedSchedule(Context context, WidgetSettings settings, TimeZone zone,
+                                                 long nowMs, int minDaysAhead) throws IOException {
+        long key = settings.cellKey(nowMs, zone);
+        PrayerSchedule shared = SCHEDULES.get(key);
+        Telemetry telemetry = WidgetTelemetry.get(context);
+        if (WidgetTick.covers(shared, nowMs, minDaysAhead)) {
+            telemetry.increment(Telemetry.CELL_HIT);
+            return shared;
         }
+        telemetry.increment(Telemetry.CELL_MISS);
+        WidgetSettings cell = settings.cell();
+        if (PrayerTimesCalculator.supportsMethod(cell.method)) {
+            // Computing locally costs microseconds per day, so keep a whole window ahead
+            shared = PrayerSchedule.compute(cell.lat, cell.lon, cell.method, cell.offsets,
+                    zone, nowMs, PrayerSchedule.DEFAULT_DAYS, 0);
+        } else {
+            // The API is only needed for method IDs the engine does not cover
+            shared = fetchScheduleFromApi(context, cell, zone, nowMs, minDaysAhead, 0);
+        }
+        SCHEDULES.put(key, shared);
+        return shared;
     }
 
-    private static void refreshDataInBackground(Context context, AppWidgetManager appWidgetManager, int appWidgetId) {
-        new Thread(() -> {
-            try {
-                SharedPreferences flutter = context.getSharedPreferences(FLUTTER_PREFS, Context.MODE_PRIVATE);
-                // Robustly read lat/lon which may be stored as String or Float/Double by Flutter
-                Double lat = null;
-                Double lon = null;
-                try {
-                    Map<String, ?> all = flutter.getAll();
-                    Object latObj = all.get("flutter.lastLatitude");
-                    Object lonObj = all.get("flutter.lastLongitude");
-                    if (latObj instanceof String) lat = Double.parseDouble((String) latObj);
-                    else if (latObj instanceof Float) lat = ((Float) latObj).doubleValue();
-                    else if (latObj instanceof Double) lat = (Double) latObj;
-                    if (lonObj instanceof String) lon = Double.parseDouble((String) lonObj);
-                    else if (lonObj instanceof Float) lon = ((Float) lonObj).doubleValue();
-                    else if (lonObj instanceof Double) lon = (Double) lonObj;
-                } catch (Exception e) {
-                    // ignore; will fallback to null check below
-                }
-                int method = 2;
-                try {
-                    // calculationMethod is stored as int; however, getAll may return Integer or Long
-                    Object mObj = flutter.getAll().get("flutter.calculationMethod");
-                    if (mObj instanceof Integer) method = (Integer) mObj;
-                    else if (mObj instanceof Long) method = ((Long) mObj).intValue();
-                    else if (mObj instanceof String) method = Integer.parseInt((String) mObj);
-                } catch (Exception ignored) {}
-                if (lat == null || lon == null) {
-                    Log.d("Widget", "Missing lat/lon in FlutterSharedPreferences; skip background refresh");
-                    return;
-                }
-                Log.d("Widget", "refreshData: lat=" + lat + " lon=" + lon + " method=" + method);
-
-                String perOffsetsJson = flutter.getString("flutter.perPrayerOffsets", null);
-                Map<String, Integer> offsets = new HashMap<>();
-                offsets.put("Fajr", 0);
-                offsets.put("Dhuhr", 0);
-                offsets.put("Asr", 0);
-                offsets.put("Maghrib", 0);
-                offsets.put("Isha", 0);
-                if (perOffsetsJson != null) {
-                    try {
-                        JSONObject o = new JSONObject(perOffsetsJson);
-                        for (String k : new String[]{"Fajr","Dhuhr","Asr","Maghrib","Isha"}) {
-                            if (o.has(k)) {
-                                try { offsets.put(k, o.getInt(k)); } catch (Exception e) {
-                                    try { offsets.put(k, Integer.parseInt(o.getString(k))); } catch (Exception ignored) {}
-                                }
-                            }
-                        }
-                    } catch (Exception ignored) {}
-                }
+    /**
+     * Builds the rest of this month from one calendar request, plus next month when fewer
+     * than {@code minDaysAhead} days are left in this one. Each month is one cached request
+     * instead of one per day.
+     */
+    private static PrayerSchedule fetchScheduleFromApi(Context context, WidgetSettings settings, TimeZone zone,
+                                                       long nowMs, int minDaysAhead, int stamp) throws IOException {
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(nowMs);
+        int year = c.get(Calendar.YEAR);
+        int month = c.get(Calendar.MONTH) + 1;
+        int today = c.get(Calendar.DAY_OF_MONTH);
+        int[] minutes = new int[2 * 31 * PrayerTimesCalculator.PRAYER_COUNT];
 
-                String today = new SimpleDateFormat("yyyy-MM-dd", Locale.US).format(new Date());
-                String urlStr = String.format(Locale.US,
-                        "https://api.aladhan.com/v1/timings/%s?latitude=%f&longitude=%f&method=%d",
-                        today, lat, lon, method);
-                URL url = new URL(urlStr);
-                HttpURLConnection conn = (HttpURLConnection) url.openConnection();
-                conn.setRequestProperty("User-Agent", "SalatTimeApp/1.0");
-                conn.setConnectTimeout(8000);
-                conn.setReadTimeout(8000);
-                int code = conn.getResponseCode();
-                if (code != 200) return;
-                BufferedReader br = new BufferedReader(new InputStreamReader(conn.getInputStream()));
-                StringBuilder sb = new StringBuilder();
-                String line;
-                while ((line = br.readLine()) != null) sb.append(line);
-                br.close();
-                JSONObject root = new JSONObject(sb.toString());
-                if (root.optInt("code", 0) != 200) return;
-                JSONObject timings = root.getJSONObject("data").getJSONObject("timings");
-
-                // Compute next prayer among five with proper time comparison
-                long nowMs = System.currentTimeMillis();
-                Calendar cal = Calendar.getInstance();
-                // Use current date as base for today's prayers
-                cal.setTimeInMillis(nowMs);
-                int currentYear = cal.get(Calendar.YEAR);
-                int currentMonth = cal.get(Calendar.MONTH);
-                int currentDay = cal.get(Calendar.DAY_OF_MONTH);
-                
-                long bestEpoch = -1; // UTC epoch millis
-                String bestName = null;
-                
-                for (String p : new String[]{"Fajr","Dhuhr","Asr","Maghrib","Isha"}) {
-                    if (!timings.has(p)) continue;
-                    String t = timings.optString(p, null);
-                    if (t == null) continue;
-                    try {
-                        String[] parts = t.split(":");
-                        if (parts.length < 2) continue;
-                        int h = Integer.parseInt(parts[0].replaceAll("[^0-9]", ""));
-                        int m = Integer.parseInt(parts[1].replaceAll("[^0-9]", ""));
-                        
-                        Calendar prayerCal = Calendar.getInstance();
-                        // Handle edge-case like "24:xx" by rolling to next day at 00:xx
-                        boolean rollNextDay = false;
-                        if (h >= 24) { h = h % 24; rollNextDay = true; }
-                        prayerCal.set(currentYear, currentMonth, currentDay, h, m, 0);
-                        if (rollNextDay) {
-                            prayerCal.add(Calendar.DAY_OF_MONTH, 1);
-                        }
-                        prayerCal.set(Calendar.MILLISECOND, 0);
-                        
-                        int off = offsets.get(p) != null ? offsets.get(p) : 0;
-                        prayerCal.add(Calendar.MINUTE, off);
-                        long epoch = prayerCal.getTimeInMillis(); // epoch is absolute UTC
-                        
-                        // Add 30 second buffer to avoid edge cases
-                        if (epoch > (nowMs + 30000)) {
-                            bestEpoch = epoch;
-                            bestName = p;
-                            break;
-                        }
-                    } catch (Exception ignored) {}
-                }
-                // If no prayer found today, next is tomorrow's Fajr
-                if (bestName == null) {
-                    String fajr = timings.optString("Fajr", null);
-                    if (fajr != null) {
-                        try {
-                            String[] parts = fajr.split(":");
-                            int h = Integer.parseInt(parts[0].replaceAll("[^0-9]", ""));
-                            int m = Integer.parseInt(parts[1].replaceAll("[^0-9]", ""));
-                            
-                            Calendar tomorrowCal = Calendar.getInstance();
-                            tomorrowCal.set(currentYear, currentMonth, currentDay + 1, h, m, 0);
-                            tomorrowCal.set(Calendar.MILLISECOND, 0);
-                            
-                            int off = offsets.get("Fajr") != null ? offsets.get("Fajr") : 0;
-                            tomorrowCal.add(Calendar.MINUTE, off);
-                bestEpoch = tomorrowCal.getTimeInMillis();
-                            bestName = "Fajr";
-                        } catch (Exception ignored) {}
-                    }
-                }
+        int monthDays = fetchMonth(context, settings, year, month, minutes, 0, nowMs);
+        int days = monthDays - today + 1;
+        if (days <= minDaysAhead) {
+            int nextYear = month == 12 ? year + 1 : year;
+            int nextMonth = month == 12 ? 1 : month + 1;
+            days += fetchMonth(context, settings, nextYear, nextMonth, minutes, monthDays, nowMs);
+        }
+        return PrayerSchedule.fromLocalMinutes(minutes, today - 1, days, year, month, today,
+                settings.offsets, zone, settings.scheduleKey(zone), stamp);
+    }
 
-                if (bestName != null && bestEpoch > 0) {
-            Log.d("Widget", "Computed next: " + bestName + " at epoch=" + bestEpoch);
-                    long diff = Math.max(0, bestEpoch - nowMs);
-                    long hours = diff / (1000 * 60 * 60);
-                    long minutes = (diff / (1000 * 60)) % 60;
-                    long seconds = (diff / 1000) % 60;
-                    String countdown = String.format(Locale.US, "%02d:%02d:%02d", hours, minutes, seconds);
-
-                    // Save to HomeWidgetPreferences so provider reads unified source
-                    SharedPreferences prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
-                    prefs.edit()
-                        .putString(KEY_NAME, bestName)
-                        .putString(KEY_COUNTDOWN, countdown)
-                        .putString(KEY_EPOCH, Long.toString(bestEpoch))
-                        .apply();
-                    Log.d("Widget", "Saved prefs: name=" + bestName + " countdown=" + countdown + " epoch=" + bestEpoch);
-
-                    // Render updated views now
-                    RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_next_prayer);
-                    views.setTextViewText(R.id.tv_prayer_name, bestName);
-                    views.setTextViewText(R.id.tv_countdown, countdown);
-                    appWidgetManager.updateAppWidget(appWidgetId, views);
-                }
-            } catch (Exception ignored) { }
-        }).start();
+    private static int fetchMonth(Context context, WidgetSettings settings, int year, int month,
+                                  int[] minutes, int firstSlot, long nowMs) throws IOException {
+        String urlStr = String.format(Locale.US,
+                "https://api.aladhan.com/v1/calendar/%d/%d?latitude=%f&longitude=%f&method=%d",
+                year, month, settings.lat, settings.lon, settings.method);
+        String cacheKey = String.format(Locale.US, "calendar-%d-%02d-%.4f-%.4f-%d",
+                year, month, settings.lat, settings.lon, settings.method);
+        PrayerTimesFetcher fetcher = fetcher(context);
+        long bytesBefore = fetcher.networkBytes();
+        InputStream body;
+        try {
+            body = fetcher.open(urlStr, cacheKey, nowMs);
+        } finally {
+            long received = fetcher.networkBytes() - bytesBefore;
+            if (received > 0) {
+                Telemetry telemetry = WidgetTelemetry.get(context);
+                telemetry.add(Telemetry.BYTES_FETCHED, received);
+                telemetry.record(Telemetry.FETCH_BYTES, received);
+            }
+        }
+        return CalendarParser.parseMonth(new InputStreamReader(body, StandardCharsets.UTF_8),
+                year, month, minutes, firstSlot);
+    }
+
+    private static synchronized PrayerTimesFetcher fetcher(Context context) {
+        if (fetcher == null) {
+            fetcher = new PrayerTimesFetcher(new File(context.getCacheDir(), "prayer_api"),
+                    FETCH_MAX_AGE_MS, new Random());
+        }
+        return fetcher;
     }
 }
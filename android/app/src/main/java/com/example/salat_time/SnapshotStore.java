@@ -0,0 +1,180 @@
+package com.example.salat_time;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.salat_time.core.PrayerTimesCalculator;
+import com.example.salat_time.core.WidgetSnapshot;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * The widget's copy of {@link WidgetSnapshot}, backed by filesDir/widget_snapshot.bin. This
+ * store is its only writer: app changes arrive through {@link WidgetChannel} and go through
+ * {@link #update}, refresh results through {@link #publish} and the prayer on screen through
+ * {@link #recordShown}, all under the same lock.
+ *
+ * A tick costs one stat of the file and a read of the generation and updated-at in its
+ * header; the whole file is only read again when any of those changed, i.e. when a push or
+ * a refresh replaced it. The header check catches a same-size rewrite that lands within the
+ * file system's timestamp resolution, as a push with unchanged settings does.
+ */
+final class SnapshotStore {
+
+    private static final Object LOCK = new Object();
+
+    private static WidgetSnapshot cached;
+    private static long cachedModified = Long.MIN_VALUE;
+    private static long cachedLength = -1;
+
+    private SnapshotStore() {}
+
+    static File file(Context context) {
+        return new File(context.getFilesDir(), WidgetSnapshot.FILE_NAME);
+    }
+
+    /** Current snapshot, or null when the app has not saved a location yet. */
+    static WidgetSnapshot get(Context context) {
+        File file = file(context);
+        synchronized (LOCK) {
+            long modified = file.lastModified();
+            long length = file.length();
+            if (cached != null && modified == cachedModified && length == cachedLength && sameHeader(file)) {
+                return cached;
+            }
+            WidgetSnapshot snapshot = null;
+            try {
+                snapshot = WidgetSnapshot.read(file);
+            } catch (IOException e) {
+                Log.w("Widget", "Failed to read widget snapshot", e);
+            }
+            if (snapshot == null && modified == 0) {
+                // Installs from before the snapshot existed: carry the app's saved settings over once
+                snapshot = migrate(context, file);
+                modified = file.lastModified();
+                length = file.length();
+            }
+            cached = snapshot;
+            cachedModified = modified;
+            cachedLength = length;
+            return snapshot;
+        }
+    }
+
+    /**
+     * Settings and last shown prayer from the file's header, without the schedule and without
+     * the lock; null when there is no snapshot. For a new process to draw something at once.
+     */
+    static WidgetSnapshot header(Context context) {
+        try {
+            return WidgetSnapshot.readHeader(file(context));
+        } catch (IOException e) {
+            Log.w("Widget", "Failed to read widget snapshot header", e);
+            return null;
+        }
+    }
+
+    private static boolean sameHeader(File file) {
+        try {
+            return WidgetSnapshot.sameHeader(file, cached);
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Writes {@code next} unless the app saved new settings since the snapshot it was derived
+     * from was read; in that case the result belongs to the old settings and is dropped.
+     */
+    static boolean publish(Context context, WidgetSnapshot next) {
+        File file = file(context);
+        synchronized (LOCK) {
+            WidgetSnapshot current = get(context);
+            if (current == null || current.generation() != next.generation()) {
+                Log.d("Widget", "Settings changed during refresh; dropping result for generation "
+                        + next.generation());
+                return false;
+            }
+            try {
+                WidgetSnapshot.write(file, next);
+            } catch (IOException e) {
+                Log.w("Widget", "Failed to write widget snapshot", e);
+                return false;
+            }
+            cached = next;
+            cachedModified = file.lastModified();
+            cachedLength = file.length();
+            return true;
+        }
+    }
+
+    /**
+     * Read-modify-write under the store lock, for changes pushed by the app. Unlike
+     * {@link #publish} it always wins: the app is the source of the settings.
+     *
+     * @return the stored snapshot, which is {@code current} when the mutation returned it unchanged
+     */
+    static WidgetSnapshot update(Context context, Mutation mutation) throws IOException {
+        File file = file(context);
+        synchronized (LOCK) {
+            WidgetSnapshot current = get(context);
+            WidgetSnapshot next = mutation.apply(current);
+            if (next == current) return current;
+            WidgetSnapshot.write(file, next);
+            cached = next;
+            cachedModified = file.lastModified();
+            cachedLength = file.length();
+            return next;
+        }
+    }
+
+    /** Stores the prayer the widgets following the app now show, if it is not stored already. */
+    static void recordShown(Context context, int prayer, long target) {
+        File file = file(context);
+        synchronized (LOCK) {
+            WidgetSnapshot current = get(context);
+            if (current == null || current.shownPrayer() == prayer && current.shownTarget() == target) return;
+            WidgetSnapshot next = current.withShown(prayer, target);
+            try {
+                WidgetSnapshot.write(file, next);
+            } catch (IOException e) {
+                Log.w("Widget", "Failed to record shown prayer", e);
+                return;
+            }
+            cached = next;
+            cachedModified = file.lastModified();
+            cachedLength = file.length();
+        }
+    }
+
+    /** Drops the stored schedule but keeps settings and the last shown prayer. */
+    static void dropSchedule(Context context, long nowMs) {
+        synchronized (LOCK) {
+            WidgetSnapshot current = get(context);
+            if (current != null) publish(context, current.withoutSchedule(nowMs));
+        }
+    }
+
+    private static WidgetSnapshot migrate(Context context, File file) {
+        WidgetSettings legacy = WidgetSettings.readLegacy(context);
+        if (legacy == null) return null;
+        WidgetSnapshot snapshot = new WidgetSnapshot(1, legacy.lat, legacy.lon, legacy.method, legacy.offsets,
+                WidgetSnapshot.NO_PRAYER, -1, WidgetTime.clock().currentTimeMillis(), null);
+        try {
+            WidgetSnapshot.write(file, snapshot);
+            Log.d("Widget", "Migrated settings from FlutterSharedPreferences into " + file.getName());
+        } catch (IOException e) {
+            Log.w("Widget", "Failed to write migrated widget snapshot", e);
+        }
+        return snapshot;
+    }
+
+    static String prayerName(int prayer) {
+        return prayer >= 0 && prayer < PrayerTimesCalculator.PRAYER_COUNT
+                ? PrayerTimesCalculator.PRAYER_NAMES[prayer] : "-";
+    }
+
+    interface Mutation {
+        /** Returns the snapshot to store, or {@code current} itself to leave the file alone. */
+        WidgetSnapshot apply(WidgetSnapshot current) throws IOException;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.salat_time;
+
+import android.app.AlarmManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+import com.example.salat_time.core.RenderPlanner;
+import com.example.salat_time.core.WidgetTick;
+
+/**
+ * Arms the widget's single pending alarm.
+ *
+ * On API 24+ the countdown is drawn by a system Chronometer, so the widget only needs to
+ * wake up when the displayed prayer changes and at local midnight. Older devices draw a
+ * text countdown and also redraw it at the next instant in the {@link RenderPlanner}
+ * timeline of the target on screen: every minute far from a prayer, every second only in its
+ * last minute. Those redraws use a non-wakeup alarm, so they only happen while the device is
+ * awake anyway.
+ */
+final class WidgetAlarmScheduler {
+
+    static final String ACTION_TICK = "com.example.salat_time.ACTION_WIDGET_TICK";
+    static final String EXTRA_WAKEUP = "com.example.salat_time.EXTRA_WAKEUP";
+
+    private WidgetAlarmScheduler() {}
+
+    static boolean hasSystemCountdown() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+    }
+
+    /**
+     * Arms the alarm {@link WidgetTick#planAlarm} chose: an exact wake-up alarm at a prayer or
+     * midnight boundary, or a non-wakeup one for a text redraw.
+     */
+    static void scheduleNext(Context context, long alarmMs, boolean wakeup) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am == null) return;
+        if (!wakeup) {
+            am.setExact(AlarmManager.RTC, alarmMs, tickIntent(context, false));
+            return;
+        }
+        PendingIntent pi = tickIntent(context, true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.S && !am.canScheduleExactAlarms()) {
+            am.setAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarmMs, pi);
+        } else {
+            am.setExactAndAllowWhileIdle(AlarmManager.RTC_WAKEUP, alarmMs, pi);
+        }
+    }
+
+    static void cancel(Context context) {
+        AlarmManager am = (AlarmManager) context.getSystemService(Context.ALARM_SERVICE);
+        if (am != null) {
+            am.cancel(tickIntent(context, true));
+        }
+    }
+
+    // One request code for both kinds so arming either replaces the other
+    private static PendingIntent tickIntent(Context context, boolean wakeup) {
+        Intent i = new Intent(context, NextPrayerWidgetProvider.class)
+                .setAction(ACTION_TICK)
+                .putExtra(EXTRA_WAKEUP, wakeup);
+        return PendingIntent.getBroadcast(context, 0, i, PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+    }
+}
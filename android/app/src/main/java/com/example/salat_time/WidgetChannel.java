@@ -0,0 +1,229 @@
+package com.example.salat_time;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import com.example.salat_time.core.PrayerSchedule;
+import com.example.salat_time.core.PrayerTimesCalculator;
+import com.example.salat_time.core.WidgetSnapshot;
+import io.flutter.plugin.common.MethodCall;
+import io.flutter.plugin.common.MethodChannel;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Handles {@link #NAME}, through which the app hands the widget its state directly instead
+ * of leaving it in SharedPreferences for the next tick to find.
+ *
+ * <ul>
+ *   <li>{@code pushSnapshot(Uint8List)}: a {@link WidgetSnapshot} in its file layout. The app
+ *       sends settings only; the widget keeps the schedule it has when they are unchanged and
+ *       otherwise computes one at once (engine methods) or leaves it to the refresh path to
+ *       fetch. A pushed schedule is stored as is. The generation is re-stamped against the
+ *       widget's own copy.</li>
+ *   <li>{@code updateOffsets(List<int>)}, {@code updateMethod(int)},
+ *       {@code updateLocation({latitude, longitude})}: deltas. Offsets shift the stored
+ *       schedule; location and method are recomputed locally when the engine covers the
+ *       method, otherwise the schedule is dropped until the widget has fetched the new one.</li>
+ *   <li>{@code configureWidget({appWidgetId, latitude, longitude, method?, offsets?})}: gives
+ *       one widget settings of its own (method and offsets default to the app's);
+ *       {@code clearWidget(appWidgetId)} makes it follow the app again. See {@link WidgetConfigs}.</li>
+ * </ul>
+ *
+ * Each call re-renders every widget before it returns. File work runs on a background
+ * thread, rendering on {@link WidgetWorker} with the ticks, and the reply on the main thread.
+ */
+final class WidgetChannel implements MethodChannel.MethodCallHandler {
+
+    static final String NAME = "com.example.salat_time/widget";
+
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+
+    private final Context context;
+    private final Handler main = new Handler(Looper.getMainLooper());
+
+    WidgetChannel(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public void onMethodCall(MethodCall call, MethodChannel.Result result) {
+        SnapshotStore.Mutation mutation;
+        switch (call.method) {
+            case "pushSnapshot":
+                mutation = pushSnapshot(call.arguments());
+                break;
+            case "updateOffsets":
+                mutation = updateOffsets(call.arguments());
+                break;
+            case "updateMethod":
+                mutation = updateMethod(call.arguments());
+                break;
+            case "updateLocation":
+                mutation = updateLocation(call.arguments());
+                break;
+            case "configureWidget":
+                mutation = configureWidget(call.arguments());
+                break;
+            case "clearWidget":
+                mutation = clearWidget(call.arguments());
+                break;
+            default:
+                result.notImplemented();
+                return;
+        }
+        if (mutation == null) {
+            result.error("bad_arguments", "Unexpected arguments for " + call.method, null);
+            return;
+        }
+        EXECUTOR.execute(() -> {
+            try {
+                WidgetSnapshot stored = SnapshotStore.update(context, mutation);
+                WidgetWorker.post(() -> {
+                    NextPrayerWidgetProvider.onSnapshotPushed(context);
+                    // Widget configs can arrive before the app's first snapshot
+                    main.post(() -> result.success(stored != null ? stored.generation() : null));
+                });
+            } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+                Log.w("Widget", call.method + " failed", e);
+                main.post(() -> result.error(errorCode(e), e.getMessage(), null));
+            }
+        });
+    }
+
+    private static SnapshotStore.Mutation pushSnapshot(Object args) {
+        if (!(args instanceof byte[])) return null;
+        byte[] bytes = (byte[]) args;
+        WidgetSnapshot pushed = WidgetSnapshot.fromBytes(bytes, bytes.length);
+        if (pushed == null) return null;
+        return current -> {
+            boolean sameSettings = current != null && current.sameSettings(pushed);
+            if (sameSettings && pushed.schedule() == null) return current;
+            // The app does not track generations; bump only when the settings actually changed
+            int generation = current == null ? 1 : sameSettings ? current.generation() : current.generation() + 1;
+            WidgetSnapshot next = pushed.restamp(generation);
+            if (next.schedule() != null || !PrayerTimesCalculator.supportsMethod(next.method())) return next;
+            long nowMs = WidgetTime.clock().currentTimeMillis();
+            return next.withSchedule(PrayerSchedule.compute(next.lat(), next.lon(), next.method(), next.offsets(),
+                    WidgetTime.clock().zone(), nowMs, PrayerSchedule.DEFAULT_DAYS, generation), nowMs);
+        };
+    }
+
+    private static SnapshotStore.Mutation updateOffsets(Object args) {
+        int[] offsets = parseOffsets(args);
+        if (offsets == null) return null;
+        return current -> {
+            WidgetSnapshot base = requireSnapshot(current);
+            PrayerSchedule old = base.schedule();
+            long nowMs = WidgetTime.clock().currentTimeMillis();
+            PrayerSchedule shifted = old == null ? null : old.withOffsets(base.offsets(), offsets,
+                    PrayerSchedule.key(base.lat(), base.lon(), base.method(), offsets, WidgetTime.clock().zone().getID()),
+                    base.generation() + 1);
+            return base.withSettings(base.lat(), base.lon(), base.method(), offsets, shifted, nowMs);
+        };
+    }
+
+    private static SnapshotStore.Mutation updateMethod(Object args) {
+        if (!(args instanceof Number)) return null;
+        int method = ((Number) args).intValue();
+        return current -> {
+            WidgetSnapshot base = requireSnapshot(current);
+            return recompute(base, base.lat(), base.lon(), method);
+        };
+    }
+
+    private static SnapshotStore.Mutation updateLocation(Object args) {
+        if (!(args instanceof Map)) return null;
+        Object lat = ((Map<?, ?>) args).get("latitude");
+        Object lon = ((Map<?, ?>) args).get("longitude");
+        if (!(lat instanceof Number) || !(lon instanceof Number)) return null;
+        return current -> {
+            WidgetSnapshot base = requireSnapshot(current);
+            return recompute(base, ((Number) lat).doubleValue(), ((Number) lon).doubleValue(), base.method());
+        };
+    }
+
+    // Widget configs live in their own files; the app's snapshot only supplies the defaults
+    private SnapshotStore.Mutation configureWidget(Object args) {
+        if (!(args instanceof Map)) return null;
+        Map<?, ?> map = (Map<?, ?>) args;
+        Object id = map.get("appWidgetId");
+        Object lat = map.get("latitude");
+        Object lon = map.get("longitude");
+        Object method = map.get("method");
+        Object offsets = map.get("offsets");
+        if (!(id instanceof Number) || !(lat instanceof Number) || !(lon instanceof Number)) return null;
+        if (method != null && !(method instanceof Number)) return null;
+        int[] own = null;
+        if (offsets != null) {
+            own = parseOffsets(offsets);
+            if (own == null) return null;
+        }
+        int[] ownOffsets = own;
+        int widgetId = ((Number) id).intValue();
+        return current -> {
+            int m = method != null ? ((Number) method).intValue() : current != null ? current.method() : 2;
+            int[] o = ownOffsets != null ? ownOffsets
+                    : current != null ? current.offsets() : new int[PrayerTimesCalculator.PRAYER_COUNT];
+            WidgetConfigs.put(context, widgetId, ((Number) lat).doubleValue(), ((Number) lon).doubleValue(), m, o);
+            NextPrayerWidgetProvider.forgetWidgets(new int[]{widgetId});
+            return current;
+        };
+    }
+
+    private SnapshotStore.Mutation clearWidget(Object args) {
+        if (!(args instanceof Number)) return null;
+        int[] ids = {((Number) args).intValue()};
+        return current -> {
+            WidgetConfigs.remove(context, ids);
+            NextPrayerWidgetProvider.forgetWidgets(ids);
+            return current;
+        };
+    }
+
+    // Engine methods cost microseconds per day, so a location or method change is ready at once
+    private static WidgetSnapshot recompute(WidgetSnapshot base, double lat, double lon, int method) {
+        long nowMs = WidgetTime.clock().currentTimeMillis();
+        PrayerSchedule schedule = PrayerTimesCalculator.supportsMethod(method)
+                ? PrayerSchedule.compute(lat, lon, method, base.offsets(), WidgetTime.clock().zone(), nowMs,
+                        PrayerSchedule.DEFAULT_DAYS, base.generation() + 1)
+                : null;
+        return base.withSettings(lat, lon, method, base.offsets(), schedule, nowMs);
+    }
+
+    private static int[] parseOffsets(Object args) {
+        if (!(args instanceof List) || ((List<?>) args).size() != PrayerTimesCalculator.PRAYER_COUNT) return null;
+        int[] offsets = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        for (int i = 0; i < offsets.length; i++) {
+            Object v = ((List<?>) args).get(i);
+            if (!(v instanceof Number)) return null;
+            offsets[i] = ((Number) v).intValue();
+        }
+        return offsets;
+    }
+
+    private static String errorCode(Exception e) {
+        if (e instanceof IOException) return "io";
+        // PrayerSchedule refuses times out of order, e.g. offsets that swap two prayers
+        if (e instanceof IllegalArgumentException) return "bad_schedule";
+        return "no_snapshot";
+    }
+
+    // Deltas need something to apply to; before the first push the app sends a whole snapshot
+    private static WidgetSnapshot requireSnapshot(WidgetSnapshot current) {
+        if (current == null) throw new IllegalStateException("No widget snapshot yet");
+        return current;
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), r -> new Thread(r, "widget-channel"));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.salat_time;
+
+import android.content.Context;
+import android.util.Log;
+import com.example.salat_time.core.WidgetSnapshot;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Location, method and offsets for widgets that do not follow the app, e.g. a second widget
+ * for a travel city. Each one is a settings-only {@link WidgetSnapshot} in
+ * filesDir/widget_configs/&lt;appWidgetId&gt;.bin; a widget without a file shows the app's
+ * snapshot. Schedules are not stored here: they come from the provider's shared cell cache.
+ *
+ * The directory is listed once per process; after that lookups are a map read.
+ */
+final class WidgetConfigs {
+
+    private static final String DIR = "widget_configs";
+
+    private static Map<Integer, WidgetSnapshot> configs;
+
+    private WidgetConfigs() {}
+
+    /** The widget's own settings, or null when it follows the app. */
+    static synchronized WidgetSnapshot get(Context context, int appWidgetId) {
+        return load(context).get(appWidgetId);
+    }
+
+    static synchronized boolean isEmpty(Context context) {
+        return load(context).isEmpty();
+    }
+
+    /** Like {@link #isEmpty} but only lists the directory when the files were not read yet. */
+    static synchronized boolean noneStored(Context context) {
+        if (configs != null) return configs.isEmpty();
+        String[] names = dir(context).list();
+        return names == null || names.length == 0;
+    }
+
+    static synchronized Map<Integer, WidgetSnapshot> all(Context context) {
+        return new HashMap<>(load(context));
+    }
+
+    /** Stores new settings for {@code appWidgetId} under the next generation. */
+    static synchronized WidgetSnapshot put(Context context, int appWidgetId, double lat, double lon, int method,
+                                           int[] offsets) throws IOException {
+        WidgetSnapshot current = load(context).get(appWidgetId);
+        long nowMs = WidgetTime.clock().currentTimeMillis();
+        WidgetSnapshot next = current != null
+                ? current.withSettings(lat, lon, method, offsets, null, nowMs)
+                : new WidgetSnapshot(1, lat, lon, method, offsets, WidgetSnapshot.NO_PRAYER, -1, nowMs, null);
+        if (next == current) return current;
+        File dir = dir(context);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Failed to create " + dir);
+        WidgetSnapshot.write(file(context, appWidgetId), next);
+        configs.put(appWidgetId, next);
+        return next;
+    }
+
+    /** Drops the settings of these widgets; any that stay placed go back to following the app. */
+    static synchronized void remove(Context context, int[] appWidgetIds) {
+        Map<Integer, WidgetSnapshot> map = load(context);
+        for (int id : appWidgetIds) {
+            if (map.remove(id) != null) {
+                //noinspection ResultOfMethodCallIgnored
+                file(context, id).delete();
+            }
+        }
+    }
+
+    private static Map<Integer, WidgetSnapshot> load(Context context) {
+        if (configs != null) return configs;
+        configs = new HashMap<>();
+        File[] files = dir(context).listFiles();
+        if (files == null) return configs;
+        for (File f : files) {
+            String name = f.getName();
+            if (!name.endsWith(".bin")) continue;
+            try {
+                int id = Integer.parseInt(name.substring(0, name.length() - 4));
+                WidgetSnapshot snapshot = WidgetSnapshot.read(f);
+                if (snapshot != null && snapshot.hasLocation()) configs.put(id, snapshot);
+            } catch (NumberFormatException | IOException e) {
+                Log.w("Widget", "Skipping widget config " + name, e);
+            }
+        }
+        return configs;
+    }
+
+    private static File dir(Context context) {
+        return new File(context.getFilesDir(), DIR);
+    }
+
+    private static File file(Context context, int appWidgetId) {
+        return new File(dir(context), appWidgetId + ".bin");
+    }
+}
@@ -0,0 +1,138 @@
+package com.example.salat_time;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import com.example.salat_time.core.Telemetry;
+import com.example.salat_time.core.WidgetTick;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps {@link #PREFETCH_DAYS} days of schedule ahead of time, in the snapshot for the app's
+ * settings and in the cell cache for widgets with their own, so a widget update only ever
+ * reads them.
+ *
+ * <ul>
+ *   <li>{@link #JOB_DAILY}: once a day while charging on an unmetered network. Fetches (API
+ *       methods) or recomputes (engine methods) the window in one batch.</li>
+ *   <li>{@link #JOB_CATCH_UP}: one-off, queued by the widget when the schedule ran out before
+ *       the daily job got its constraints, e.g. a phone that is never charged on Wi-Fi. Any
+ *       network will do, but not on low battery; failures back off.</li>
+ * </ul>
+ *
+ * Both go through the provider's single-flight refresh, so a job and a tick for the same
+ * settings and date share one fetch.
+ */
+public class WidgetPrefetchJob extends JobService {
+
+    static final int JOB_DAILY = 7301;
+    static final int JOB_CATCH_UP = 7302;
+
+    // The daily job skips its work while at least this many days are left
+    static final int PREFETCH_DAYS = 7;
+
+    private static final long DAY_MS = 24 * 60 * 60_000L;
+    private static final long DAILY_FLEX_MS = 6 * 60 * 60_000L;
+    private static final long CATCH_UP_BACKOFF_MS = 15 * 60_000L;
+
+    /** Arms the daily job unless it is already pending; cheap enough to call on every enable. */
+    static void scheduleDaily(Context context) {
+        JobScheduler js = scheduler(context);
+        if (js == null || isPending(js, JOB_DAILY)) return;
+        JobInfo.Builder b = new JobInfo.Builder(JOB_DAILY, new ComponentName(context, WidgetPrefetchJob.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_UNMETERED)
+                .setRequiresCharging(true)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            b.setPeriodic(DAY_MS, DAILY_FLEX_MS);
+        } else {
+            b.setPeriodic(DAY_MS);
+        }
+        if (js.schedule(b.build()) != JobScheduler.RESULT_SUCCESS) {
+            Log.w("Widget", "Failed to schedule daily prefetch");
+        }
+    }
+
+    /**
+     * Queues a one-off refresh for whenever a network is available.
+     *
+     * @return false when there is no JobScheduler to queue it on; the caller refreshes inline
+     */
+    static boolean scheduleCatchUp(Context context) {
+        JobScheduler js = scheduler(context);
+        if (js == null) return false;
+        if (isPending(js, JOB_CATCH_UP)) return true;
+        JobInfo.Builder b = new JobInfo.Builder(JOB_CATCH_UP, new ComponentName(context, WidgetPrefetchJob.class))
+                .setRequiredNetworkType(JobInfo.NETWORK_TYPE_ANY)
+                .setBackoffCriteria(CATCH_UP_BACKOFF_MS, JobInfo.BACKOFF_POLICY_EXPONENTIAL)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) b.setRequiresBatteryNotLow(true);
+        return js.schedule(b.build()) == JobScheduler.RESULT_SUCCESS;
+    }
+
+    static void cancel(Context context) {
+        JobScheduler js = scheduler(context);
+        if (js == null) return;
+        js.cancel(JOB_DAILY);
+        js.cancel(JOB_CATCH_UP);
+    }
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        // Jobs start on the main thread; the snapshot and config reads belong on the worker
+        Context app = getApplicationContext();
+        WidgetWorker.post(() -> run(app, params));
+        return true;
+    }
+
+    private void run(Context app, JobParameters params) {
+        Telemetry telemetry = WidgetTelemetry.get(app);
+        boolean catchUp = params.getJobId() == JOB_CATCH_UP;
+        int minDays = catchUp ? WidgetTick.MIN_DAYS_AHEAD : PREFETCH_DAYS;
+        List<WidgetSettings> targets = NextPrayerWidgetProvider.prefetchTargets(app, WidgetTime.clock().currentTimeMillis(), minDays);
+        if (targets.isEmpty()) {
+            telemetry.increment(Telemetry.PREFETCH_SKIPPED);
+            Log.d("Widget", "Prefetch job " + params.getJobId() + ": nothing to do");
+            jobFinished(params, false);
+            return;
+        }
+        telemetry.increment(Telemetry.PREFETCH_RUN);
+        AtomicInteger remaining = new AtomicInteger(targets.size());
+        AtomicBoolean failed = new AtomicBoolean();
+        for (WidgetSettings settings : targets) {
+            NextPrayerWidgetProvider.startRefresh(app, settings, PREFETCH_DAYS, (schedule, error) -> {
+                if (error != null) {
+                    Log.w("Widget", "Prefetch job " + params.getJobId() + " failed", error);
+                    failed.set(true);
+                }
+                // The daily job comes round again anyway; only the catch-up retries with backoff
+                if (remaining.decrementAndGet() == 0) jobFinished(params, catchUp && failed.get());
+            });
+        }
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        // The refreshes themselves keep running and land in the snapshot and cache if they can
+        return params.getJobId() == JOB_CATCH_UP;
+    }
+
+    private static boolean isPending(JobScheduler js, int id) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) return js.getPendingJob(id) != null;
+        for (JobInfo job : js.getAllPendingJobs()) {
+            if (job.getId() == id) return true;
+        }
+        return false;
+    }
+
+    private static JobScheduler scheduler(Context context) {
+        return (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+    }
+}
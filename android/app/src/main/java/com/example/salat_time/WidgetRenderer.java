@@ -0,0 +1,190 @@
+package com.example.salat_time;
+
+import android.app.PendingIntent;
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.Intent;
+import android.view.View;
+import android.widget.RemoteViews;
+import com.example.salat_time.core.Telemetry;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Pushes widget state to the launcher.
+ *
+ * A widget gets the full layout with its click wiring once per process lifetime (or again
+ * after the system asks for it through onUpdate). After that only the changed text goes
+ * over Binder, through one partiallyUpdateAppWidget call for all widget IDs, and nothing is
+ * sent when the prayer name, countdown and target are the same as in the last push.
+ *
+ * Widgets that share the app's settings are one group; a widget with its own config is a
+ * group of its own, keyed by its ID, so each group is compared with its own last push.
+ */
+final class WidgetRenderer {
+
+    private static final Object LOCK = new Object();
+
+    // Widget IDs that already hold the full layout and click wiring
+    private static int[] wiredIds = new int[0];
+    private static PendingIntent launchIntent;
+    // Set by the first render in this process
+    private static volatile boolean rendered;
+
+    // Last push per group; widget IDs are never INVALID_APPWIDGET_ID, so that keys the shared group
+    private static final Map<Integer, Pushed> LAST = new HashMap<>();
+
+    private WidgetRenderer() {}
+
+    static boolean hasRendered() {
+        return rendered;
+    }
+
+    /**
+     * Draws the full layout without click wiring, unless a render already ran in this process.
+     * For the main thread of a new process, which should not pay getLaunchIntentForPackage; the
+     * IDs stay unwired, so the first {@link #render} sends the layout again with its clicks.
+     */
+    static void renderCold(Context context, AppWidgetManager mgr, int[] ids,
+                           String name, String countdown, long target, long nowMs) {
+        if (ids.length == 0) return;
+        boolean chronometer = target > 0 && WidgetAlarmScheduler.hasSystemCountdown();
+        long base = chronometer ? WidgetTime.clock().elapsedRealtime() + Math.max(0, target - nowMs) : 0;
+        synchronized (LOCK) {
+            // The worker got there first; its state is newer
+            if (rendered) return;
+            RemoteViews views = new RemoteViews(context.getPackageName(), R.layout.widget_next_prayer);
+            applyState(views, name, countdown, base, chronometer);
+            mgr.updateAppWidget(ids, views);
+        }
+    }
+
+    /** Renders the same state to every ID in {@code ids}, all following the app's settings. */
+    static void render(Context context, AppWidgetManager mgr, int[] ids,
+                       String name, String countdown, long target, long nowMs) {
+        render(context, mgr, AppWidgetManager.INVALID_APPWIDGET_ID, ids, name, countdown, target, nowMs);
+    }
+
+    /**
+     * Renders the same state to every ID in {@code ids}.
+     *
+     * @param group INVALID_APPWIDGET_ID for widgets following the app, else the one configured widget's ID
+     * @param countdown text countdown, or null when the Chronometer shows it
+     * @param target epoch of the next prayer, or -1 if unknown
+     */
+    static void render(Context context, AppWidgetManager mgr, int group, int[] ids,
+                       String name, String countdown, long target, long nowMs) {
+        if (ids.length == 0) return;
+        boolean chronometer = target > 0 && WidgetAlarmScheduler.hasSystemCountdown();
+        // Chronometer base is in the elapsedRealtime timebase; it moves when the wall clock is set
+        long base = chronometer ? WidgetTime.clock().elapsedRealtime() + Math.max(0, target - nowMs) : 0;
+        synchronized (LOCK) {
+            rendered = true;
+            Pushed last = LAST.get(group);
+            if (last == null) {
+                last = new Pushed();
+                LAST.put(group, last);
+            }
+            int[] fresh = unwired(ids);
+            if (fresh.length > 0) {
+                RemoteViews full = new RemoteViews(context.getPackageName(), R.layout.widget_next_prayer);
+                wireClicks(context, full);
+                applyState(full, name, countdown, base, chronometer);
+                mgr.updateAppWidget(fresh, full);
+                markWired(fresh);
+                WidgetTelemetry.get(context).increment(Telemetry.RENDER_FULL);
+            }
+            int wiredCount = ids.length - fresh.length;
+            boolean unchanged = name.equals(last.name) && target == last.target
+                    && (chronometer ? last.countdown == null && Math.abs(base - last.base) < 1000
+                            : countdown != null && countdown.equals(last.countdown));
+            if (wiredCount > 0 && !unchanged) {
+                int[] wired = fresh.length == 0 ? ids : without(ids, fresh);
+                RemoteViews partial = new RemoteViews(context.getPackageName(), R.layout.widget_next_prayer);
+                applyState(partial, name, countdown, base, chronometer);
+                mgr.partiallyUpdateAppWidget(wired, partial);
+                WidgetTelemetry.get(context).increment(Telemetry.RENDER_PARTIAL);
+            } else if (wiredCount > 0) {
+                WidgetTelemetry.get(context).increment(Telemetry.RENDER_SKIPPED);
+            }
+            last.name = name;
+            last.countdown = chronometer ? null : countdown;
+            last.target = target;
+            last.base = base;
+        }
+    }
+
+    /** Forces the next render to send the full layout for these IDs (host restarted or asked for it). */
+    static void forget(int[] ids) {
+        synchronized (LOCK) {
+            wiredIds = without(wiredIds, ids);
+            for (int id : ids) LAST.remove(id);
+        }
+    }
+
+    private static void applyState(RemoteViews views, String name, String countdown, long base,
+                                   boolean chronometer) {
+        views.setTextViewText(R.id.tv_prayer_name, name);
+        if (chronometer) {
+            // The launcher ticks the Chronometer itself
+            views.setChronometer(R.id.ch_countdown, base, null, true);
+            views.setChronometerCountDown(R.id.ch_countdown, true);
+            views.setViewVisibility(R.id.ch_countdown, View.VISIBLE);
+            views.setViewVisibility(R.id.tv_countdown, View.GONE);
+        } else {
+            views.setTextViewText(R.id.tv_countdown, countdown != null ? countdown : "--:--:--");
+            views.setViewVisibility(R.id.tv_countdown, View.VISIBLE);
+            views.setViewVisibility(R.id.ch_countdown, View.GONE);
+        }
+    }
+
+    private static void wireClicks(Context context, RemoteViews views) {
+        if (launchIntent == null) {
+            Intent intent = context.getPackageManager().getLaunchIntentForPackage(context.getPackageName());
+            if (intent == null) return;
+            launchIntent = PendingIntent.getActivity(context, 0, intent, PendingIntent.FLAG_IMMUTABLE);
+        }
+        views.setOnClickPendingIntent(R.id.tv_title, launchIntent);
+        views.setOnClickPendingIntent(R.id.tv_prayer_name, launchIntent);
+        views.setOnClickPendingIntent(R.id.tv_countdown, launchIntent);
+        views.setOnClickPendingIntent(R.id.ch_countdown, launchIntent);
+    }
+
+    private static int[] unwired(int[] ids) {
+        int n = 0;
+        for (int id : ids) if (!contains(wiredIds, id)) n++;
+        if (n == 0) return new int[0];
+        int[] out = new int[n];
+        int j = 0;
+        for (int id : ids) if (!contains(wiredIds, id)) out[j++] = id;
+        return out;
+    }
+
+    private static void markWired(int[] ids) {
+        int[] merged = new int[wiredIds.length + ids.length];
+        System.arraycopy(wiredIds, 0, merged, 0, wiredIds.length);
+        System.arraycopy(ids, 0, merged, wiredIds.length, ids.length);
+        wiredIds = merged;
+    }
+
+    private static int[] without(int[] ids, int[] remove) {
+        int n = 0;
+        for (int id : ids) if (!contains(remove, id)) n++;
+        int[] out = new int[n];
+        int j = 0;
+        for (int id : ids) if (!contains(remove, id)) out[j++] = id;
+        return out;
+    }
+
+    private static boolean contains(int[] ids, int id) {
+        for (int x : ids) if (x == id) return true;
+        return false;
+    }
+
+    private static final class Pushed {
+        String name;
+        String countdown;
+        long target = Long.MIN_VALUE;
+        long base;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.salat_time;
+
+import android.appwidget.AppWidgetManager;
+import android.content.Context;
+import android.content.SharedPreferences;
+import com.example.salat_time.core.PrayerSchedule;
+import com.example.salat_time.core.PrayerTimesCalculator;
+import com.example.salat_time.core.ScheduleCache;
+import com.example.salat_time.core.WidgetSnapshot;
+import java.util.Map;
+import java.util.TimeZone;
+import org.json.JSONObject;
+
+/**
+ * Location, method and offsets a refresh works from, taken from the app's
+ * {@link WidgetSnapshot} or from one widget's own config in {@link WidgetConfigs}.
+ * {@link #readLegacy} only exists to migrate installs that predate the snapshot.
+ */
+final class WidgetSettings {
+
+    private static final String FLUTTER_PREFS = "FlutterSharedPreferences";
+    // shared_preferences stores Dart doubles as prefixed strings on Android
+    private static final String FLUTTER_DOUBLE_PREFIX = "VGhpcyBpcyB0aGUgcHJlZml4IGZvciBEb3VibGUu";
+
+    final double lat;
+    final double lon;
+    final int method;
+    final int[] offsets;
+    // Snapshot generation these settings came from; stamped into the schedule built from them
+    final int generation;
+    // Widget with its own config, or INVALID_APPWIDGET_ID for the app's settings
+    final int widgetId;
+
+    WidgetSettings(double lat, double lon, int method, int[] offsets, int generation) {
+        this(lat, lon, method, offsets, generation, AppWidgetManager.INVALID_APPWIDGET_ID);
+    }
+
+    WidgetSettings(double lat, double lon, int method, int[] offsets, int generation, int widgetId) {
+        this.lat = lat;
+        this.lon = lon;
+        this.method = method;
+        this.offsets = offsets;
+        this.generation = generation;
+        this.widgetId = widgetId;
+    }
+
+    /** Returns null when no location has been saved yet. */
+    static WidgetSettings of(WidgetSnapshot snapshot) {
+        return of(snapshot, AppWidgetManager.INVALID_APPWIDGET_ID);
+    }
+
+    static WidgetSettings of(WidgetSnapshot snapshot, int widgetId) {
+        if (snapshot == null || !snapshot.hasLocation()) return null;
+        return new WidgetSettings(snapshot.lat(), snapshot.lon(), snapshot.method(), snapshot.offsets(),
+                snapshot.generation(), widgetId);
+    }
+
+    boolean isGlobal() {
+        return widgetId == AppWidgetManager.INVALID_APPWIDGET_ID;
+    }
+
+    /** Centre of this location's cell with no offsets: what the shared schedule is built from. */
+    WidgetSettings cell() {
+        return new WidgetSettings(ScheduleCache.cellCenter(lat), ScheduleCache.cellCenter(lon), method,
+                new int[PrayerTimesCalculator.PRAYER_COUNT], 0, widgetId);
+    }
+
+    long cellKey(long nowMs, TimeZone zone) {
+        return ScheduleCache.cellKey(lat, lon, method, zone.getID(), ScheduleCache.localDate(nowMs, zone));
+    }
+
+    /** Settings as the app stored them in FlutterSharedPreferences before the snapshot; null without a location. */
+    static WidgetSettings readLegacy(Context context) {
+        SharedPreferences flutter = context.getSharedPreferences(FLUTTER_PREFS, Context.MODE_PRIVATE);
+        Map<String, ?> all = flutter.getAll();
+        // Robustly read lat/lon which may be stored as String or Float/Double by Flutter
+        Double lat = null;
+        Double lon = null;
+        try {
+            lat = readDouble(all.get("flutter.lastLatitude"));
+            lon = readDouble(all.get("flutter.lastLongitude"));
+        } catch (NumberFormatException ignored) { }
+        if (lat == null || lon == null) return null;
+
+        int method = 2;
+        // calculationMethod is stored as int; however, getAll may return Integer or Long
+        Object mObj = all.get("flutter.calculationMethod");
+        try {
+            if (mObj instanceof Integer) method = (Integer) mObj;
+            else if (mObj instanceof Long) method = ((Long) mObj).intValue();
+            else if (mObj instanceof String) method = Integer.parseInt((String) mObj);
+        } catch (NumberFormatException ignored) { }
+
+        int[] offsets = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        Object perOffsetsJson = all.get("flutter.perPrayerOffsets");
+        if (perOffsetsJson instanceof String) {
+            try {
+                JSONObject o = new JSONObject((String) perOffsetsJson);
+                for (int i = 0; i < offsets.length; i++) {
+                    String k = PrayerTimesCalculator.PRAYER_NAMES[i];
+                    if (o.has(k)) {
+                        try { offsets[i] = o.getInt(k); } catch (Exception e) {
+                            try { offsets[i] = Integer.parseInt(o.getString(k)); } catch (Exception ignored) {}
+                        }
+                    }
+                }
+            } catch (Exception ignored) {}
+        }
+        return new WidgetSettings(lat, lon, method, offsets, 1);
+    }
+
+    long scheduleKey(TimeZone zone) {
+        return PrayerSchedule.key(lat, lon, method, offsets, zone.getID());
+    }
+
+    /**
+     * Identity of a refresh: same location, method, offsets, zone and local date share one
+     * flight. A widget with its own config only fills the cell cache, so every widget in the
+     * cell shares its flight.
+     */
+    String refreshKey(long nowMs, TimeZone zone) {
+        if (!isGlobal()) return "cell-" + Long.toHexString(cellKey(nowMs, zone));
+        return Long.toHexString(scheduleKey(zone)) + "@" + ScheduleCache.localDate(nowMs, zone);
+    }
+
+    private static Double readDouble(Object value) {
+        if (value instanceof String) {
+            String s = (String) value;
+            if (s.startsWith(FLUTTER_DOUBLE_PREFIX)) s = s.substring(FLUTTER_DOUBLE_PREFIX.length());
+            return Double.parseDouble(s);
+        }
+        if (value instanceof Float) return ((Float) value).doubleValue();
+        if (value instanceof Double) return (Double) value;
+        return null;
+    }
+}
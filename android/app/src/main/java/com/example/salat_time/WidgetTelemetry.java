@@ -0,0 +1,84 @@
+package com.example.salat_time;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.util.Log;
+import com.example.salat_time.core.CalendarParser;
+import com.example.salat_time.core.PrayerTimesFetcher;
+import com.example.salat_time.core.ScheduleCache;
+import com.example.salat_time.core.Telemetry;
+import java.io.IOException;
+
+/**
+ * Process-wide {@link Telemetry} for the widget, persisted as JSON under
+ * {@link #KEY_TELEMETRY} in HomeWidgetPreferences so the app can read it with
+ * HomeWidget.getWidgetData. Recording stays in memory; the snapshot is written with
+ * apply() at most every {@link #PERSIST_INTERVAL_MS}, or right away after a refresh.
+ */
+final class WidgetTelemetry {
+
+    static final String KEY_TELEMETRY = "widget_telemetry";
+
+    // What the old fixed one-minute ELAPSED_REALTIME_WAKEUP tick cost per day
+    static final int LEGACY_WAKEUPS_PER_DAY = 24 * 60;
+
+    private static final String PREFS_NAME = "HomeWidgetPreferences";
+    private static final long PERSIST_INTERVAL_MS = 15 * 60_000L;
+
+    private static Telemetry telemetry;
+    private static long lastPersistMs;
+
+    private WidgetTelemetry() {}
+
+    static synchronized Telemetry get(Context context) {
+        if (telemetry == null) {
+            String json = prefs(context).getString(KEY_TELEMETRY, null);
+            if (json != null) {
+                try {
+                    telemetry = Telemetry.fromJson(json);
+                } catch (IOException e) {
+                    Log.w("Widget", "Discarding unreadable telemetry snapshot", e);
+                }
+            }
+            if (telemetry == null) telemetry = new Telemetry(WidgetTime.clock().currentTimeMillis());
+            lastPersistMs = WidgetTime.clock().currentTimeMillis();
+        }
+        return telemetry;
+    }
+
+    static void recordWakeup(Context context, long nowMs) {
+        int day = ScheduleCache.localDate(nowMs, WidgetTime.clock().zone());
+        Telemetry t = get(context);
+        long count = t.recordWakeup(day);
+        Log.d("Widget", "Alarm wake-up #" + count + " today, previous day " + t.wakeupsPreviousDay()
+                + " (one-minute tick: " + LEGACY_WAKEUPS_PER_DAY + "/day)");
+    }
+
+    /** Counts a failed refresh under its cause. */
+    static void recordFailure(Context context, Throwable error) {
+        int counter;
+        if (error instanceof PrayerTimesFetcher.BackoffException) {
+            counter = Telemetry.FAIL_BACKOFF;
+        } else if (error instanceof CalendarParser.FormatException) {
+            counter = Telemetry.FAIL_PARSE;
+        } else if (error instanceof IOException) {
+            counter = Telemetry.FAIL_NETWORK;
+        } else {
+            counter = Telemetry.FAIL_OTHER;
+        }
+        get(context).increment(counter);
+    }
+
+    static void persist(Context context, long nowMs, boolean force) {
+        Telemetry t = get(context);
+        synchronized (WidgetTelemetry.class) {
+            if (!force && nowMs - lastPersistMs < PERSIST_INTERVAL_MS) return;
+            lastPersistMs = nowMs;
+        }
+        prefs(context).edit().putString(KEY_TELEMETRY, t.toJson()).apply();
+    }
+
+    private static SharedPreferences prefs(Context context) {
+        return context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+}
@@ -0,0 +1,44 @@
+package com.example.salat_time;
+
+import android.os.SystemClock;
+import com.example.salat_time.core.WidgetClock;
+import java.util.TimeZone;
+
+/**
+ * The widget's time source. Every widget class reads wall-clock time, elapsed time and the
+ * zone through {@link #clock()} instead of System, SystemClock and TimeZone directly, so
+ * the clock can be replaced, e.g. to fast-forward a debug build across midnight or a DST
+ * change.
+ */
+final class WidgetTime {
+
+    static final WidgetClock SYSTEM = new WidgetClock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return SystemClock.elapsedRealtime();
+        }
+
+        @Override
+        public TimeZone zone() {
+            return TimeZone.getDefault();
+        }
+    };
+
+    private static volatile WidgetClock clock = SYSTEM;
+
+    private WidgetTime() {}
+
+    static WidgetClock clock() {
+        return clock;
+    }
+
+    /** Replaces the clock; null restores the system one. */
+    static void set(WidgetClock replacement) {
+        clock = replacement != null ? replacement : SYSTEM;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.salat_time;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * The widget's one long-lived background looper.
+ *
+ * The provider hands every broadcast here with goAsync(), so the main thread, which the
+ * Flutter engine needs at the same time during boot, only pays for the hand-off. Ticks,
+ * snapshot reads, rendering (RemoteViews and AppWidgetManager Binder calls) and alarm
+ * arming all run on this thread, one at a time and in order, which is also what keeps the
+ * tracker single-threaded. Network fetches do not run here; they stay on the refresh
+ * executor so a slow request never holds up a tick.
+ */
+final class WidgetWorker {
+
+    private static Handler handler;
+
+    private WidgetWorker() {}
+
+    static void post(Runnable task) {
+        handler().post(task);
+    }
+
+    static void postDelayed(Runnable task, long delayMs) {
+        handler().postDelayed(task, delayMs);
+    }
+
+    private static synchronized Handler handler() {
+        if (handler == null) {
+            HandlerThread thread = new HandlerThread("widget-worker", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            handler = new Handler(thread.getLooper());
+        }
+        return handler;
+    }
+}
@@ -1,5 +1,14 @@
 package com.example.salat_time
 
 import io.flutter.embedding.android.FlutterActivity
+import io.flutter.embedding.engine.FlutterEngine
+import io.flutter.plugin.common.MethodChannel
 
-class MainActivity : FlutterActivity()
+class MainActivity : FlutterActivity() {
+    override fun configureFlutterEngine(flutterEngine: FlutterEngine) {
+        // Registers the generated plugins (GeneratedPluginRegistrant) first
+        super.configureFlutterEngine(flutterEngine)
+        MethodChannel(flutterEngine.dartExecutor.binaryMessenger, WidgetChannel.NAME)
+            .setMethodCallHandler(WidgetChannel(applicationContext))
+    }
+}
@@ -0,0 +1,38 @@
+// Android-free widget scheduling logic: prayer-time engine, schedule, tick state, fetch and parse.
+// Unit tests and JMH benchmarks run on a plain JVM, off-device.
+plugins {
+    `java-library`
+    id("me.champeau.jmh") version "0.7.2"
+}
+
+java {
+    sourceCompatibility = JavaVersion.VERSION_11
+    targetCompatibility = JavaVersion.VERSION_11
+}
+
+// Sources and test literals are UTF-8 (e.g. JsonPullReaderTest); don't depend on the platform default
+tasks.withType<JavaCompile>().configureEach {
+    options.encoding = "UTF-8"
+}
+
+dependencies {
+    testImplementation("junit:junit:4.13.2")
+}
+
+// ./gradlew :prayer_core:jmh (the root build redirects output to <repo>/build/prayer_core/results/jmh/)
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
+    timeUnit.set("ns")
+    benchmarkMode.set(listOf("avgt"))
+    // Reports allocation rate (gc.alloc.rate.norm = bytes per operation) next to the timings
+    profilers.set(listOf("gc"))
+}
+
+// ./gradlew :prayer_core:simulate [--args=<days>]: a year of widget ticks per city on a simulated clock
+tasks.register<JavaExec>("simulate") {
+    description = "Replays widget ticks for a set of cities and reports correctness, computations, allocations and wake-ups"
+    classpath = sourceSets["test"].runtimeClasspath
+    mainClass.set("com.example.salat_time.core.WidgetSimulation")
+}
@@ -0,0 +1,60 @@
+package com.example.salat_time.core;
+
+import java.util.TimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+/** Per-tick lookup cost: cold binary search against the steady-state tracker update. */
+@State(Scope.Thread)
+public class NextPrayerLookupBenchmark {
+
+    private static final long START = 1_792_195_200_000L; // 2026-10-17T00:00:00Z
+    private static final long WINDOW_MS = 28L * 86_400_000L;
+
+    private PrayerSchedule schedule;
+    private NextPrayerTracker tracker;
+    private long[] randomNows;
+    private int next;
+    private long tickNow;
+
+    @Setup
+    public void setUp() {
+        schedule = PrayerSchedule.compute(21.4225, 39.8262, 4, new int[PrayerTimesCalculator.PRAYER_COUNT],
+                TimeZone.getTimeZone("Asia/Riyadh"), START, PrayerSchedule.DEFAULT_DAYS, 1);
+        tracker = new NextPrayerTracker();
+        tracker.setSchedule(schedule);
+        randomNows = new long[1024];
+        java.util.Random random = new java.util.Random(7);
+        for (int i = 0; i < randomNows.length; i++) {
+            randomNows[i] = START + (long) (random.nextDouble() * WINDOW_MS);
+        }
+        tickNow = START;
+    }
+
+    @Benchmark
+    public int binarySearch() {
+        long now = randomNows[next++ & (randomNows.length - 1)];
+        return schedule.indexOfNext(now);
+    }
+
+    /** One widget tick a minute apart, as on API 24+ where the Chronometer draws the countdown. */
+    @Benchmark
+    public void trackerTick(Blackhole bh) {
+        tickNow += 60_000L;
+        if (tickNow >= START + WINDOW_MS) tickNow = START;
+        bh.consume(tracker.update(tickNow, 1));
+        bh.consume(tracker.target());
+    }
+
+    /** Same tick but also asking for the text, as the pre-Chronometer path does. */
+    @Benchmark
+    public String trackerTickWithText() {
+        tickNow += 60_000L;
+        if (tickNow >= START + WINDOW_MS) tickNow = START;
+        tracker.update(tickNow, 1);
+        return tracker.countdownText();
+    }
+}
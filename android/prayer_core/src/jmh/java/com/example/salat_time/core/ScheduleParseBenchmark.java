@@ -0,0 +1,90 @@
+package com.example.salat_time.core;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Locale;
+import java.util.TimeZone;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Building a schedule: one month of calendar JSON through the streaming parser, the
+ * 30-day engine computation, and a cold read of the widget snapshot file.
+ */
+@State(Scope.Thread)
+public class ScheduleParseBenchmark {
+
+    private static final TimeZone STOCKHOLM = TimeZone.getTimeZone("Europe/Stockholm");
+    private static final long START = 1_772_319_600_000L; // 2026-03-01T00:00+01:00
+
+    private String monthJson;
+    private final int[] minutes = new int[31 * PrayerTimesCalculator.PRAYER_COUNT];
+    private File snapshotFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        monthJson = calendarJson();
+        snapshotFile = File.createTempFile("snapshot", ".bin");
+        int[] offsets = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        PrayerSchedule schedule = PrayerSchedule.compute(59.3293, 18.0686, 3, offsets, STOCKHOLM, START,
+                PrayerSchedule.DEFAULT_DAYS, 1);
+        WidgetSnapshot.write(snapshotFile, new WidgetSnapshot(1, 59.3293, 18.0686, 3, offsets,
+                WidgetSnapshot.NO_PRAYER, -1, START, schedule));
+    }
+
+    @TearDown
+    public void tearDown() {
+        //noinspection ResultOfMethodCallIgnored
+        snapshotFile.delete();
+    }
+
+    @Benchmark
+    public int parseCalendarMonth() throws IOException {
+        return CalendarParser.parseMonth(new StringReader(monthJson), 2026, 3, minutes, 0);
+    }
+
+    @Benchmark
+    public PrayerSchedule computeThirtyDays() {
+        return PrayerSchedule.compute(59.3293, 18.0686, 3, new int[PrayerTimesCalculator.PRAYER_COUNT],
+                STOCKHOLM, START, PrayerSchedule.DEFAULT_DAYS, 1);
+    }
+
+    @Benchmark
+    public WidgetSnapshot readSnapshotFile() throws IOException {
+        return WidgetSnapshot.read(snapshotFile);
+    }
+
+    // A month in /v1/calendar shape, with the meta and hijri blocks the parser has to skip
+    private static String calendarJson() {
+        int[] day = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        StringBuilder sb = new StringBuilder("{\"code\":200,\"status\":\"OK\",\"data\":[");
+        for (int d = 1; d <= 31; d++) {
+            PrayerTimesCalculator.computeMinutes(2026, 3, d, 59.3293, 18.0686, d < 29 ? 1 : 2, 3, day);
+            if (d > 1) sb.append(',');
+            sb.append("{\"timings\":{");
+            String zone = d < 29 ? " (CET)" : " (CEST)";
+            String[] names = {"Fajr", "Sunrise", "Dhuhr", "Asr", "Sunset", "Maghrib", "Isha", "Imsak", "Midnight"};
+            int[] values = {day[0], day[0] + 90, day[1], day[2], day[3], day[3], day[4], day[0] - 10, 30};
+            for (int i = 0; i < names.length; i++) {
+                if (i > 0) sb.append(',');
+                sb.append('"').append(names[i]).append("\":\"")
+                        .append(PrayerTimesCalculator.formatMinutes(values[i])).append(zone).append('"');
+            }
+            sb.append("},\"date\":{\"readable\":\"").append(String.format(Locale.US, "%02d Mar 2026", d))
+                    .append("\",\"timestamp\":\"1772326800\",\"gregorian\":{\"date\":\"")
+                    .append(String.format(Locale.US, "%02d-03-2026", d))
+                    .append("\",\"format\":\"DD-MM-YYYY\",\"weekday\":{\"en\":\"Sunday\"},\"month\":{\"number\":3,\"en\":\"March\"}},")
+                    .append("\"hijri\":{\"date\":\"11-09-1447\",\"month\":{\"number\":9,\"en\":\"Rama\\u1e0d\\u0101n\",")
+                    .append("\"ar\":\"\\u0631\\u0645\\u0636\\u0627\\u0646\"},\"holidays\":[]}},")
+                    .append("\"meta\":{\"latitude\":59.3293,\"longitude\":18.0686,\"timezone\":\"Europe/Stockholm\",")
+                    .append("\"method\":{\"id\":3,\"name\":\"Muslim World League\",\"params\":{\"Fajr\":18,\"Isha\":17}},")
+                    .append("\"latitudeAdjustmentMethod\":\"ANGLE_BASED\",\"school\":\"STANDARD\",")
+                    .append("\"offset\":{\"Imsak\":0,\"Fajr\":0,\"Sunrise\":0,\"Dhuhr\":0,\"Asr\":0,\"Maghrib\":0,\"Isha\":0}}}");
+        }
+        return sb.append("]}").toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.salat_time.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/** When the widget next has to be redrawn, which is when its single alarm is armed. */
+public final class AlarmBoundary {
+
+    // Without a usable schedule (no location yet, fetch failed) retry at this interval
+    public static final long NO_SCHEDULE_RETRY_MS = 30 * 60_000L;
+
+    // The local day of the last lookup; a tick only needs a Calendar once the day is over
+    private static volatile Day lastDay;
+
+    private AlarmBoundary() {}
+
+    /**
+     * Next instant the widget must be redrawn: when the displayed prayer switches (30s before
+     * it, matching {@link PrayerSchedule#NEXT_BUFFER_MS}) or local midnight, whichever is first.
+     */
+    public static long next(PrayerSchedule schedule, long nowMs, TimeZone zone) {
+        long midnight = nextLocalMidnight(nowMs, zone);
+        int idx = schedule != null ? schedule.indexOfNext(nowMs) : -1;
+        if (idx < 0) return Math.min(midnight, nowMs + NO_SCHEDULE_RETRY_MS);
+        return Math.min(midnight, schedule.epochAt(idx) - PrayerSchedule.NEXT_BUFFER_MS);
+    }
+
+    public static long nextLocalMidnight(long nowMs, TimeZone zone) {
+        Day day = lastDay;
+        // TimeZone.getDefault() hands out a copy per call, so compare ids rather than instances
+        if (day != null && nowMs >= day.startMs && nowMs < day.endMs && day.zoneId.equals(zone.getID())) {
+            return day.endMs;
+        }
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(nowMs);
+        c.set(Calendar.HOUR_OF_DAY, 0);
+        c.set(Calendar.MINUTE, 0);
+        c.set(Calendar.SECOND, 0);
+        c.set(Calendar.MILLISECOND, 0);
+        long startMs = c.getTimeInMillis();
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        day = new Day(zone.getID(), startMs, c.getTimeInMillis());
+        lastDay = day;
+        return day.endMs;
+    }
+
+    private static final class Day {
+        final String zoneId;
+        final long startMs;
+        final long endMs;
+
+        Day(String zoneId, long startMs, long endMs) {
+            this.zoneId = zoneId;
+            this.startMs = startMs;
+            this.endMs = endMs;
+        }
+    }
+}
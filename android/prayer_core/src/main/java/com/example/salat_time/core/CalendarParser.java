@@ -0,0 +1,141 @@
+package com.example.salat_time.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Streams an aladhan {@code /v1/calendar/{year}/{month}} response into local minutes per
+ * prayer. Only {@code data[].timings} (the five prayers) and {@code data[].date.gregorian.date}
+ * are read; meta, hijri and the other timings are skipped without building strings, and
+ * names are matched in the reader's buffer, so a month costs a fixed 1 KB read buffer plus
+ * the caller's int array and the timing strings themselves.
+ */
+public final class CalendarParser {
+
+    private static final String[] TIMING_NAMES = PrayerTimesCalculator.PRAYER_NAMES;
+    // Names looked for at each level, by index
+    private static final String[] RESPONSE_FIELDS = {"code", "data"};
+    private static final int CODE = 0;
+    private static final int DATA = 1;
+    private static final String[] DAY_FIELDS = {"timings", "date"};
+    private static final int TIMINGS = 0;
+    private static final int DATE = 1;
+    private static final String[] GREGORIAN = {"gregorian"};
+    private static final String[] GREGORIAN_DATE = {"date"};
+
+    private CalendarParser() {}
+
+    /**
+     * Parses one month. Day {@code d} (1-based) of {@code year}/{@code month} is written to
+     * {@code out[(firstSlot + d - 1) * 5 + prayer]} as minutes after local midnight.
+     *
+     * @return the number of days in the month, all of which were present
+     * @throws FormatException if the response is not a successful calendar for that month
+     */
+    public static int parseMonth(Reader reader, int year, int month, int[] out, int firstSlot) throws FormatException {
+        try {
+            return parse(reader, year, month, out, firstSlot);
+        } catch (IOException | RuntimeException e) {
+            throw new FormatException(e.getMessage(), e);
+        }
+    }
+
+    private static int parse(Reader reader, int year, int month, int[] out, int firstSlot) throws IOException {
+        int count = PrayerTimesCalculator.PRAYER_COUNT;
+        int[] day = new int[count];
+        int lastDay = 0;
+        long seen = 0; // bit per day of month
+        try (JsonPullReader json = new JsonPullReader(reader)) {
+            json.beginObject();
+            while (json.hasNext()) {
+                int field = json.nextName(RESPONSE_FIELDS);
+                if (field == CODE) {
+                    int code = json.nextInt();
+                    if (code != 200) throw new IOException("API returned code " + code);
+                } else if (field == DATA) {
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        Arrays.fill(day, -1);
+                        int dom = readDay(json, year, month, day);
+                        if (dom <= 0) continue;
+                        for (int p = 0; p < count; p++) {
+                            if (day[p] < 0) throw new IOException("Missing " + TIMING_NAMES[p] + " on day " + dom);
+                        }
+                        int slot = firstSlot + dom - 1;
+                        if ((slot + 1) * count > out.length) throw new IOException("Day " + dom + " does not fit");
+                        System.arraycopy(day, 0, out, slot * count, count);
+                        seen |= 1L << dom;
+                        lastDay = Math.max(lastDay, dom);
+                    }
+                    json.endArray();
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        }
+        if (lastDay == 0) throw new IOException("No days for " + year + "-" + month);
+        long expected = ((1L << lastDay) - 1) << 1;
+        if (seen != expected) throw new IOException("Calendar for " + year + "-" + month + " has gaps");
+        return lastDay;
+    }
+
+    // Returns the day of month, or 0 when the entry belongs to another month
+    private static int readDay(JsonPullReader json, int year, int month, int[] day) throws IOException {
+        int dom = 0;
+        boolean inMonth = false;
+        json.beginObject();
+        while (json.hasNext()) {
+            int field = json.nextName(DAY_FIELDS);
+            if (field == TIMINGS) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    int p = json.nextName(TIMING_NAMES);
+                    if (p >= 0) {
+                        day[p] = PrayerSchedule.parseMinutes(json.nextString());
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } else if (field == DATE) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    if (json.nextName(GREGORIAN) == 0) {
+                        json.beginObject();
+                        while (json.hasNext()) {
+                            if (json.nextName(GREGORIAN_DATE) == 0) {
+                                // DD-MM-YYYY
+                                String date = json.nextString();
+                                if (date.length() != 10) throw new IOException("Bad date " + date);
+                                dom = Integer.parseInt(date.substring(0, 2));
+                                inMonth = Integer.parseInt(date.substring(3, 5)) == month
+                                        && Integer.parseInt(date.substring(6)) == year;
+                            } else {
+                                json.skipValue();
+                            }
+                        }
+                        json.endObject();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+        return inMonth && dom >= 1 && dom <= 31 ? dom : 0;
+    }
+
+    /** The body arrived but is not a usable calendar: an API error, bad JSON or missing days. */
+    public static final class FormatException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        FormatException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
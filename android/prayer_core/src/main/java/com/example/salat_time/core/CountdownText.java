@@ -0,0 +1,31 @@
+package com.example.salat_time.core;
+
+/**
+ * {@link RenderPlanner} text for one widget, formatted into a reused buffer. A String is only
+ * built when the visible text changed, so redrawing the same text allocates nothing.
+ */
+public final class CountdownText {
+
+    private final char[] buffer = new char[RenderPlanner.MAX_LENGTH];
+    private final char[] shown = new char[RenderPlanner.MAX_LENGTH];
+    private int shownLength = -1;
+    private String text;
+
+    /** Text for {@code remainingMs}; the same instance as the last call while it reads the same. */
+    public String of(long remainingMs) {
+        int n = RenderPlanner.format(remainingMs, buffer);
+        if (n != shownLength || !sameChars(buffer, shown, n)) {
+            System.arraycopy(buffer, 0, shown, 0, n);
+            shownLength = n;
+            text = new String(buffer, 0, n);
+        }
+        return text;
+    }
+
+    private static boolean sameChars(char[] a, char[] b, int length) {
+        for (int i = 0; i < length; i++) {
+            if (a[i] != b[i]) return false;
+        }
+        return true;
+    }
+}
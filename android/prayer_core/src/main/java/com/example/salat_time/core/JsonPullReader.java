@@ -0,0 +1,322 @@
+package com.example.salat_time.core;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Minimal streaming JSON reader with the same shape as {@code android.util.JsonReader}
+ * (beginObject / nextName / nextString / skipValue ...). Reads through a fixed 1 KB buffer,
+ * so memory does not depend on the document size. {@link #skipValue()} scans past whole
+ * objects and arrays without building strings for them, and {@link #nextName(String[])}
+ * matches a name against the ones a caller knows without building one either.
+ *
+ * Used instead of the platform class because this module has no Android dependency.
+ */
+public final class JsonPullReader implements Closeable {
+
+    public enum Token { BEGIN_OBJECT, END_OBJECT, BEGIN_ARRAY, END_ARRAY, NAME, STRING, NUMBER, BOOLEAN, NULL, END_DOCUMENT }
+
+    private static final int EMPTY_ARRAY = 1;
+    private static final int NONEMPTY_ARRAY = 2;
+    private static final int EMPTY_OBJECT = 3;
+    private static final int DANGLING_NAME = 4;
+    private static final int NONEMPTY_OBJECT = 5;
+    private static final int EMPTY_DOCUMENT = 6;
+    private static final int NONEMPTY_DOCUMENT = 7;
+
+    private final Reader in;
+    private final char[] buf = new char[1024];
+    private int pos;
+    private int limit;
+
+    private int[] stack = new int[16];
+    private int depth;
+    private Token peeked;
+    private final StringBuilder text = new StringBuilder();
+
+    public JsonPullReader(Reader in) {
+        this.in = in;
+        stack[depth++] = EMPTY_DOCUMENT;
+    }
+
+    public Token peek() throws IOException {
+        if (peeked != null) return peeked;
+        int scope = stack[depth - 1];
+        int c;
+        switch (scope) {
+            case EMPTY_ARRAY:
+                if (nextNonWhitespace() == ']') {
+                    pos++;
+                    return peeked = Token.END_ARRAY;
+                }
+                stack[depth - 1] = NONEMPTY_ARRAY;
+                break;
+            case NONEMPTY_ARRAY:
+                c = nextNonWhitespace();
+                if (c == ']') {
+                    pos++;
+                    return peeked = Token.END_ARRAY;
+                }
+                expect(c, ',');
+                break;
+            case EMPTY_OBJECT:
+            case NONEMPTY_OBJECT:
+                c = nextNonWhitespace();
+                if (c == '}') {
+                    pos++;
+                    return peeked = Token.END_OBJECT;
+                }
+                if (scope == NONEMPTY_OBJECT) {
+                    expect(c, ',');
+                    c = nextNonWhitespace();
+                }
+                if (c != '"') throw syntax("Expected name");
+                stack[depth - 1] = DANGLING_NAME;
+                return peeked = Token.NAME;
+            case DANGLING_NAME:
+                expect(nextNonWhitespace(), ':');
+                stack[depth - 1] = NONEMPTY_OBJECT;
+                break;
+            case EMPTY_DOCUMENT:
+                stack[depth - 1] = NONEMPTY_DOCUMENT;
+                break;
+            default:
+                if (skipWhitespace()) throw syntax("Trailing content");
+                return peeked = Token.END_DOCUMENT;
+        }
+        c = nextNonWhitespace();
+        switch (c) {
+            case '{':
+                pos++;
+                return peeked = Token.BEGIN_OBJECT;
+            case '[':
+                pos++;
+                return peeked = Token.BEGIN_ARRAY;
+            case '"':
+                return peeked = Token.STRING;
+            case 't':
+            case 'f':
+                return peeked = Token.BOOLEAN;
+            case 'n':
+                return peeked = Token.NULL;
+            default:
+                if (c == '-' || (c >= '0' && c <= '9')) return peeked = Token.NUMBER;
+                throw syntax("Unexpected character '" + (char) c + "'");
+        }
+    }
+
+    public void beginObject() throws IOException {
+        consume(Token.BEGIN_OBJECT);
+        push(EMPTY_OBJECT);
+    }
+
+    public void endObject() throws IOException {
+        consume(Token.END_OBJECT);
+        depth--;
+    }
+
+    public void beginArray() throws IOException {
+        consume(Token.BEGIN_ARRAY);
+        push(EMPTY_ARRAY);
+    }
+
+    public void endArray() throws IOException {
+        consume(Token.END_ARRAY);
+        depth--;
+    }
+
+    public boolean hasNext() throws IOException {
+        Token t = peek();
+        return t != Token.END_OBJECT && t != Token.END_ARRAY && t != Token.END_DOCUMENT;
+    }
+
+    public String nextName() throws IOException {
+        consume(Token.NAME);
+        return readQuoted();
+    }
+
+    /** Reads the next name and returns its index in {@code names}, or -1 if it is not one of them. */
+    public int nextName(String[] names) throws IOException {
+        consume(Token.NAME);
+        readQuotedText();
+        for (int i = 0; i < names.length; i++) {
+            if (names[i].contentEquals(text)) return i;
+        }
+        return -1;
+    }
+
+    /** Returns a string value; numbers and literals are returned as their source text. */
+    public String nextString() throws IOException {
+        Token t = peek();
+        peeked = null;
+        if (t == Token.STRING) return readQuoted();
+        if (t == Token.NUMBER || t == Token.BOOLEAN || t == Token.NULL) return readLiteral();
+        throw new IllegalStateException("Expected a value but was " + t);
+    }
+
+    public int nextInt() throws IOException {
+        String s = nextString();
+        try {
+            return Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+            throw syntax("Expected an int but was " + s);
+        }
+    }
+
+    /** Skips the next value, including everything nested inside it. */
+    public void skipValue() throws IOException {
+        Token t = peek();
+        peeked = null;
+        switch (t) {
+            case BEGIN_OBJECT:
+            case BEGIN_ARRAY:
+                skipContainer();
+                break;
+            case STRING:
+                skipQuoted();
+                break;
+            case NUMBER:
+            case BOOLEAN:
+            case NULL:
+                skipLiteral();
+                break;
+            default:
+                throw new IllegalStateException("Cannot skip " + t);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    private void consume(Token expected) throws IOException {
+        Token t = peek();
+        if (t != expected) throw new IllegalStateException("Expected " + expected + " but was " + t);
+        peeked = null;
+    }
+
+    private void push(int scope) {
+        if (depth == stack.length) stack = Arrays.copyOf(stack, depth * 2);
+        stack[depth++] = scope;
+    }
+
+    private void expect(int c, char expected) throws IOException {
+        if (c != expected) throw syntax("Expected '" + expected + "'");
+        pos++;
+    }
+
+    private boolean fill() throws IOException {
+        if (pos < limit) return true;
+        pos = 0;
+        limit = in.read(buf, 0, buf.length);
+        if (limit <= 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    /** Advances past whitespace; returns false at end of input. */
+    private boolean skipWhitespace() throws IOException {
+        while (fill()) {
+            char c = buf[pos];
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') return true;
+            pos++;
+        }
+        return false;
+    }
+
+    private int nextNonWhitespace() throws IOException {
+        if (!skipWhitespace()) throw new EOFException("End of input");
+        return buf[pos];
+    }
+
+    private char read() throws IOException {
+        if (!fill()) throw new EOFException("End of input");
+        return buf[pos++];
+    }
+
+    private String readQuoted() throws IOException {
+        readQuotedText();
+        return text.toString();
+    }
+
+    // Unescaped contents of the string at pos into text
+    private void readQuotedText() throws IOException {
+        pos++; // opening quote
+        text.setLength(0);
+        while (true) {
+            char c = read();
+            if (c == '"') return;
+            text.append(c == '\\' ? readEscape() : c);
+        }
+    }
+
+    private void skipQuoted() throws IOException {
+        pos++;
+        while (true) {
+            char c = read();
+            if (c == '"') return;
+            if (c == '\\') readEscape();
+        }
+    }
+
+    private char readEscape() throws IOException {
+        char c = read();
+        switch (c) {
+            case 'n': return '\n';
+            case 't': return '\t';
+            case 'r': return '\r';
+            case 'b': return '\b';
+            case 'f': return '\f';
+            case 'u':
+                int value = 0;
+                for (int i = 0; i < 4; i++) {
+                    int digit = Character.digit(read(), 16);
+                    if (digit < 0) throw syntax("Bad \\u escape");
+                    value = value * 16 + digit;
+                }
+                return (char) value;
+            default:
+                return c; // \" \\ \/
+        }
+    }
+
+    private String readLiteral() throws IOException {
+        text.setLength(0);
+        while (fill() && !isDelimiter(buf[pos])) text.append(buf[pos++]);
+        return text.toString();
+    }
+
+    private void skipLiteral() throws IOException {
+        while (fill() && !isDelimiter(buf[pos])) pos++;
+    }
+
+    // Called with the opening bracket already consumed by peek()
+    private void skipContainer() throws IOException {
+        int level = 1;
+        while (level > 0) {
+            if (!fill()) throw new EOFException("End of input");
+            char c = buf[pos];
+            if (c == '"') {
+                skipQuoted();
+                continue;
+            }
+            pos++;
+            if (c == '{' || c == '[') level++;
+            else if (c == '}' || c == ']') level--;
+        }
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ',' || c == '}' || c == ']' || c == ':' || c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    private IOException syntax(String message) {
+        return new IOException(message + " at offset " + pos + " of the current buffer");
+    }
+}
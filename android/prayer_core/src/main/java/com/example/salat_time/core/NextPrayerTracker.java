@@ -0,0 +1,70 @@
+package com.example.salat_time.core;
+
+/**
+ * Hot-path state for the widget tick: the validated schedule, a cursor into it and the
+ * countdown text. A steady-state {@link #update} allocates nothing, and the text is only
+ * formatted when asked for, into a String only when it reads differently.
+ *
+ * The schedule is dropped when the settings stamp (the widget snapshot's generation)
+ * no longer matches, and by {@link #invalidate()} on time-zone changes. Date changes are
+ * covered by the schedule window itself: past days are skipped by the cursor and an
+ * exhausted window reports no next prayer.
+ */
+public final class NextPrayerTracker {
+
+    private volatile PrayerSchedule schedule;
+
+    private int cursor = -1;
+    private int prayer = -1;
+    private long target = -1;
+    private long updatedAt;
+    private final CountdownText countdown = new CountdownText();
+
+    public PrayerSchedule schedule() {
+        return schedule;
+    }
+
+    public void setSchedule(PrayerSchedule schedule) {
+        this.schedule = schedule;
+    }
+
+    public void invalidate() {
+        schedule = null;
+    }
+
+    /** Returns false when there is no usable next prayer and the schedule must be rebuilt. */
+    public boolean update(long nowMs, int settingsStamp) {
+        PrayerSchedule s = schedule;
+        if (s == null || s.settingsStamp() != settingsStamp) return false;
+        int idx = s.indexOfNext(nowMs, cursor);
+        if (idx < 0) return false;
+        cursor = idx;
+        prayer = s.prayerAt(idx);
+        target = s.epochAt(idx);
+        updatedAt = nowMs;
+        return true;
+    }
+
+    /** Prayer index (see {@link PrayerTimesCalculator#FAJR}) from the last successful update. */
+    public int prayer() {
+        return prayer;
+    }
+
+    public long target() {
+        return target;
+    }
+
+    /** Whole days left in the schedule after the current entry's day. */
+    public int daysRemaining() {
+        PrayerSchedule s = schedule;
+        return s != null && cursor >= 0 ? s.daysRemainingAfter(cursor) : 0;
+    }
+
+    /**
+     * {@link RenderPlanner} text for the target at the last successful update; the same
+     * instance is returned until the visible text changes.
+     */
+    public String countdownText() {
+        return countdown.of(target - updatedAt);
+    }
+}
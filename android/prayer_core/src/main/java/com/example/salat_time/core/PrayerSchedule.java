@@ -0,0 +1,235 @@
+package com.example.salat_time.core;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Rolling window of adjusted prayer epochs, five per day, packed in one ascending
+ * {@code long[]}. Entry {@code i} is prayer {@code i % 5} of day {@code i / 5}.
+ */
+public final class PrayerSchedule {
+
+    public static final int DEFAULT_DAYS = 30;
+
+    // Same buffer as the original widget logic: a prayer less than 30s away counts as passed
+    public static final long NEXT_BUFFER_MS = 30_000L;
+
+    private final long key;
+    private final int settingsStamp;
+    private final long[] epochs;
+
+    public PrayerSchedule(long key, int settingsStamp, long[] epochs) {
+        if (epochs.length % PrayerTimesCalculator.PRAYER_COUNT != 0) {
+            throw new IllegalArgumentException("epochs must hold whole days: " + epochs.length);
+        }
+        this.key = key;
+        this.settingsStamp = settingsStamp;
+        this.epochs = epochs;
+    }
+
+    public long key() {
+        return key;
+    }
+
+    public int settingsStamp() {
+        return settingsStamp;
+    }
+
+    public int size() {
+        return epochs.length;
+    }
+
+    public int days() {
+        return epochs.length / PrayerTimesCalculator.PRAYER_COUNT;
+    }
+
+    public long epochAt(int index) {
+        return epochs[index];
+    }
+
+    public int prayerAt(int index) {
+        return index % PrayerTimesCalculator.PRAYER_COUNT;
+    }
+
+    public long[] epochs() {
+        return epochs;
+    }
+
+    /** Index of the first prayer more than {@link #NEXT_BUFFER_MS} after {@code nowMs}, or -1 if the window is exhausted. */
+    public int indexOfNext(long nowMs) {
+        long threshold = nowMs + NEXT_BUFFER_MS;
+        int i = Arrays.binarySearch(epochs, threshold);
+        // Exact hit is "not after threshold"; otherwise binarySearch returns -(insertion point) - 1
+        i = i >= 0 ? i + 1 : -i - 1;
+        while (i < epochs.length && epochs[i] <= threshold) i++;
+        return i < epochs.length ? i : -1;
+    }
+
+    /**
+     * Same as {@link #indexOfNext(long)} but first checks {@code hint} and its successor, which
+     * on a steady tick is the answer, so the common case is O(1).
+     */
+    public int indexOfNext(long nowMs, int hint) {
+        long threshold = nowMs + NEXT_BUFFER_MS;
+        for (int i = Math.max(hint, 0); i <= hint + 1 && i < epochs.length; i++) {
+            if (epochs[i] > threshold && (i == 0 || epochs[i - 1] <= threshold)) return i;
+        }
+        return indexOfNext(nowMs);
+    }
+
+    /** Number of whole days left in the window after the day containing {@code index}. */
+    public int daysRemainingAfter(int index) {
+        return days() - 1 - index / PrayerTimesCalculator.PRAYER_COUNT;
+    }
+
+    /**
+     * Same days with per-prayer offsets {@code to} instead of {@code from}. Offsets are plain
+     * minute shifts, so an offset edit needs neither the engine nor the API.
+     *
+     * @throws IllegalArgumentException when the new offsets swap two prayers
+     */
+    public PrayerSchedule withOffsets(int[] from, int[] to, long key, int settingsStamp) {
+        long[] shifted = epochs.clone();
+        for (int i = 0; i < shifted.length; i++) {
+            int p = i % PrayerTimesCalculator.PRAYER_COUNT;
+            shifted[i] += (to[p] - from[p]) * 60_000L;
+        }
+        sanitize(shifted);
+        return new PrayerSchedule(key, settingsStamp, shifted);
+    }
+
+    /**
+     * Builds a schedule of {@code days} days starting at the local date of {@code startMs}
+     * with the engine, applying per-prayer offsets in minutes. When the previous day's Isha
+     * falls after midnight and is still ahead of {@code startMs} (high-latitude summer), that
+     * day leads the window as well. The window ends before the first day the method has no
+     * time for some prayer (midnight sun, polar night), so it may be shorter or empty.
+     *
+     * @throws IllegalArgumentException when times are out of order, or for a method the
+     *         engine does not cover ({@link PrayerTimesCalculator#supportsMethod})
+     */
+    public static PrayerSchedule compute(double lat, double lon, int method, int[] offsets, TimeZone zone,
+                                         long startMs, int days, int settingsStamp) {
+        int count = PrayerTimesCalculator.PRAYER_COUNT;
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(startMs);
+        c.add(Calendar.DAY_OF_MONTH, -1);
+        long[] previous = new long[count];
+        computeDay(c, lat, lon, method, offsets, zone, previous, 0);
+        boolean lead = previous[count - 1] > startMs;
+        long[] epochs = new long[(days + (lead ? 1 : 0)) * count];
+        if (lead) System.arraycopy(previous, 0, epochs, 0, count);
+        c.add(Calendar.DAY_OF_MONTH, 1);
+        for (int base = lead ? count : 0; base < epochs.length; base += count) {
+            if (!computeDay(c, lat, lon, method, offsets, zone, epochs, base)) {
+                epochs = Arrays.copyOf(epochs, base);
+                break;
+            }
+            c.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        sanitize(epochs);
+        return new PrayerSchedule(key(lat, lon, method, offsets, zone.getID()), settingsStamp, epochs);
+    }
+
+    // False when the engine has no time for some prayer on that day
+    private static boolean computeDay(Calendar c, double lat, double lon, int method, int[] offsets, TimeZone zone,
+                                      long[] out, int base) {
+        PrayerTimesCalculator.computeEpochs(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1,
+                c.get(Calendar.DAY_OF_MONTH), lat, lon, zone, method, out, base);
+        for (int p = 0; p < PrayerTimesCalculator.PRAYER_COUNT; p++) {
+            if (out[base + p] < 0) return false;
+            out[base + p] += offsets[p] * 60_000L;
+        }
+        return true;
+    }
+
+    /**
+     * Builds a schedule from API timings already parsed to minutes after local midnight, for
+     * methods the engine does not cover. {@code minutes[(firstSlot + d) * 5 + p]} is prayer
+     * {@code p} on {@code year/month/day} plus {@code d} days; "24:xx" rolls to the next day.
+     *
+     * @throws IllegalArgumentException when a time is out of order
+     */
+    public static PrayerSchedule fromLocalMinutes(int[] minutes, int firstSlot, int days, int year, int month, int day,
+                                                  int[] offsets, TimeZone zone, long key, int settingsStamp) {
+        int count = PrayerTimesCalculator.PRAYER_COUNT;
+        long[] epochs = new long[days * count];
+        Calendar c = Calendar.getInstance(zone);
+        for (int d = 0; d < days; d++) {
+            for (int p = 0; p < count; p++) {
+                int m = minutes[(firstSlot + d) * count + p];
+                c.clear();
+                c.set(year, month - 1, day);
+                c.add(Calendar.DAY_OF_MONTH, d + m / 1440);
+                c.set(Calendar.HOUR_OF_DAY, (m % 1440) / 60);
+                c.set(Calendar.MINUTE, m % 60);
+                epochs[d * count + p] = c.getTimeInMillis() + offsets[p] * 60_000L;
+            }
+        }
+        sanitize(epochs);
+        return new PrayerSchedule(key, settingsStamp, epochs);
+    }
+
+    /** Parses "HH:mm" with optional suffix such as "05:12 (EDT)" into minutes; hours may be 24+. */
+    public static int parseMinutes(String hhmm) {
+        int i = 0;
+        int n = hhmm.length();
+        int h = 0;
+        while (i < n && hhmm.charAt(i) != ':') {
+            char ch = hhmm.charAt(i++);
+            if (ch >= '0' && ch <= '9') h = h * 10 + (ch - '0');
+        }
+        if (i >= n) throw new IllegalArgumentException("Not a time: " + hhmm);
+        i++;
+        int m = 0;
+        int digits = 0;
+        while (i < n && digits < 2) {
+            char ch = hhmm.charAt(i++);
+            if (ch >= '0' && ch <= '9') {
+                m = m * 10 + (ch - '0');
+                digits++;
+            }
+        }
+        return h * 60 + m;
+    }
+
+    /** Identity of the inputs a schedule was built from; a change in any of them invalidates it. */
+    public static long key(double lat, double lon, int method, int[] offsets, String zoneId) {
+        long h = 0xcbf29ce484222325L;
+        h = mix(h, Math.round(lat * 10_000));
+        h = mix(h, Math.round(lon * 10_000));
+        h = mix(h, method);
+        for (int off : offsets) h = mix(h, off);
+        h = mix(h, zoneId.hashCode());
+        return h;
+    }
+
+    private static long mix(long h, long v) {
+        h ^= v;
+        h *= 0x100000001b3L;
+        return h ^ (h >>> 29);
+    }
+
+    /**
+     * Offsets can land two prayers on the same minute; those ties are nudged a millisecond
+     * apart so binary search holds. A missing time or one before its predecessor is not
+     * repaired: it means the times are wrong (or offsets swap two prayers), and pushing it
+     * through would only show a prayer that has already passed.
+     *
+     * @throws IllegalArgumentException on a missing or out-of-order entry
+     */
+    private static void sanitize(long[] epochs) {
+        long previous = Long.MIN_VALUE;
+        for (int i = 0; i < epochs.length; i++) {
+            long raw = epochs[i];
+            if (raw < 0) throw new IllegalArgumentException("No time for entry " + i);
+            if (raw < previous) {
+                throw new IllegalArgumentException("Entry " + i + " (" + raw + ") is before entry " + (i - 1)
+                        + " (" + previous + ")");
+            }
+            if (i > 0 && raw <= epochs[i - 1]) epochs[i] = epochs[i - 1] + 1;
+            previous = raw;
+        }
+    }
+}
@@ -0,0 +1,333 @@
+package com.example.salat_time.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Offline prayer-time engine for the widget.
+ *
+ * Port of the PrayTimes.org solar-position algorithm that api.aladhan.com uses, with the
+ * same method IDs as the API's {@code method} parameter, Shafi Asr (API default school=0)
+ * and angle-based high-latitude adjustment (API default latitudeAdjustmentMethod=3).
+ * Results are rounded to the minute the same way the API formats its HH:mm strings.
+ */
+public final class PrayerTimesCalculator {
+
+    public static final int FAJR = 0;
+    public static final int DHUHR = 1;
+    public static final int ASR = 2;
+    public static final int MAGHRIB = 3;
+    public static final int ISHA = 4;
+    public static final int PRAYER_COUNT = 5;
+
+    public static final String[] PRAYER_NAMES = {"Fajr", "Dhuhr", "Asr", "Maghrib", "Isha"};
+
+    // Indexes into the working array used by the algorithm
+    private static final int T_FAJR = 0;
+    private static final int T_SUNRISE = 1;
+    private static final int T_DHUHR = 2;
+    private static final int T_ASR = 3;
+    private static final int T_SUNSET = 4;
+    private static final int T_MAGHRIB = 5;
+    private static final int T_ISHA = 6;
+
+    private static final double RISE_SET_ANGLE = 0.833;
+
+    /** Calculation parameters for one API method ID. NaN means "not used". */
+    private static final class Method {
+        final double fajrAngle;
+        final double ishaAngle;
+        final double ishaMinutes;
+        final double maghribAngle;
+        final double maghribMinutes;
+        final boolean moonsighting;
+
+        Method(double fajrAngle, double ishaAngle, double ishaMinutes,
+               double maghribAngle, double maghribMinutes, boolean moonsighting) {
+            this.fajrAngle = fajrAngle;
+            this.ishaAngle = ishaAngle;
+            this.ishaMinutes = ishaMinutes;
+            this.maghribAngle = maghribAngle;
+            this.maghribMinutes = maghribMinutes;
+            this.moonsighting = moonsighting;
+        }
+
+        static Method angles(double fajr, double isha) {
+            return new Method(fajr, isha, Double.NaN, Double.NaN, 0, false);
+        }
+
+        static Method ishaMinutes(double fajr, double ishaMinutes) {
+            return new Method(fajr, Double.NaN, ishaMinutes, Double.NaN, 0, false);
+        }
+    }
+
+    private static final Method[] METHODS = new Method[100];
+
+    static {
+        METHODS[0] = new Method(16, 14, Double.NaN, 4, Double.NaN, false);      // Shia Ithna-Ashari (Jafari)
+        METHODS[1] = Method.angles(18, 18);                                     // Karachi
+        METHODS[2] = Method.angles(15, 15);                                     // ISNA
+        METHODS[3] = Method.angles(18, 17);                                     // MWL
+        METHODS[4] = Method.ishaMinutes(18.5, 90);                              // Umm al-Qura, Makkah
+        METHODS[5] = Method.angles(19.5, 17.5);                                 // Egypt
+        METHODS[7] = new Method(17.7, 14, Double.NaN, 4.5, Double.NaN, false);  // Tehran
+        METHODS[8] = Method.ishaMinutes(19.5, 90);                              // Gulf Region
+        METHODS[9] = Method.angles(18, 17.5);                                   // Kuwait
+        METHODS[10] = Method.ishaMinutes(18, 90);                               // Qatar
+        METHODS[11] = Method.angles(20, 18);                                    // Singapore
+        METHODS[12] = Method.angles(12, 12);                                    // France (UOIF)
+        METHODS[13] = Method.angles(18, 17);                                    // Turkey (Diyanet)
+        METHODS[14] = Method.angles(16, 15);                                    // Russia
+        METHODS[15] = new Method(18, 18, Double.NaN, Double.NaN, 0, true);      // Moonsighting Committee
+        METHODS[16] = Method.angles(18.2, 18.2);                                // Dubai
+        METHODS[17] = Method.angles(20, 18);                                    // JAKIM, Malaysia
+        METHODS[18] = Method.angles(18, 18);                                    // Tunisia
+        METHODS[19] = Method.angles(18, 17);                                    // Algeria
+        METHODS[20] = Method.angles(20, 18);                                    // KEMENAG, Indonesia
+        METHODS[21] = Method.angles(19, 17);                                    // Morocco
+        METHODS[22] = new Method(18, Double.NaN, 77, Double.NaN, 3, false);     // Portugal
+        METHODS[23] = new Method(18, 18, Double.NaN, Double.NaN, 5, false);     // Jordan
+        METHODS[99] = Method.angles(14.7, 13.7);                                // Islamiska Forbundet (app custom)
+    }
+
+    private PrayerTimesCalculator() {}
+
+    public static boolean supportsMethod(int method) {
+        return method >= 0 && method < METHODS.length && METHODS[method] != null;
+    }
+
+    /**
+     * Computes the five prayer times for a local calendar date as minutes after local
+     * midnight, or -1 where a time does not exist. Maghrib and Isha are never before Dhuhr:
+     * in a high-latitude summer they can fall after midnight and are then 1440 or more, like
+     * the API's "24:xx".
+     *
+     * @param month 1-12
+     * @param tzHours UTC offset of the location on that date, in hours
+     * @throws IllegalArgumentException for a method ID the engine does not cover; callers
+     *         check {@link #supportsMethod} and fetch those from the API instead
+     */
+    public static void computeMinutes(int year, int month, int day, double lat, double lon,
+                                      double tzHours, int method, int[] out) {
+        if (!supportsMethod(method)) throw new IllegalArgumentException("Unsupported method " + method);
+        Method m = METHODS[method];
+        double jDate = julian(year, month, day) - lon / (15 * 24);
+
+        double[] t = {5, 6, 12, 13, 18, 18, 18};
+        for (int i = 0; i < t.length; i++) t[i] /= 24;
+        double fajr = sunAngleTime(jDate, lat, m.fajrAngle, t[T_FAJR], true);
+        double sunrise = sunAngleTime(jDate, lat, RISE_SET_ANGLE, t[T_SUNRISE], true);
+        double dhuhr = midDay(jDate, t[T_DHUHR]);
+        double asr = asrTime(jDate, lat, 1, t[T_ASR]);
+        double sunset = sunAngleTime(jDate, lat, RISE_SET_ANGLE, t[T_SUNSET], false);
+        double maghrib = Double.isNaN(m.maghribAngle)
+                ? sunset : sunAngleTime(jDate, lat, m.maghribAngle, t[T_MAGHRIB], false);
+        double isha = Double.isNaN(m.ishaAngle)
+                ? Double.NaN : sunAngleTime(jDate, lat, m.ishaAngle, t[T_ISHA], false);
+
+        double shift = tzHours - lon / 15;
+        fajr += shift;
+        sunrise += shift;
+        dhuhr += shift;
+        asr += shift;
+        sunset += shift;
+        maghrib += shift;
+        isha += shift;
+
+        // Angle-based high-latitude adjustment
+        double night = timeDiff(sunset, sunrise);
+        double portion = m.fajrAngle / 60 * night;
+        if (Double.isNaN(fajr) || timeDiff(fajr, sunrise) > portion) fajr = sunrise - portion;
+        if (!Double.isNaN(m.ishaAngle)) {
+            portion = m.ishaAngle / 60 * night;
+            if (Double.isNaN(isha) || timeDiff(sunset, isha) > portion) isha = sunset + portion;
+        }
+        if (!Double.isNaN(m.maghribAngle)) {
+            portion = m.maghribAngle / 60 * night;
+            if (Double.isNaN(maghrib) || timeDiff(sunset, maghrib) > portion) maghrib = sunset + portion;
+        }
+
+        if (m.moonsighting) {
+            // Seasonal twilight guard of the Moonsighting Committee (Khalid Shaukat)
+            int dayOfYear = dayOfYear(year, month, day);
+            double safeFajr = sunrise - seasonAdjustedMorning(lat, dayOfYear, year) / 60;
+            if (Double.isNaN(fajr) || safeFajr > fajr) fajr = safeFajr;
+            double safeIsha = sunset + seasonAdjustedEvening(lat, dayOfYear, year) / 60;
+            if (Double.isNaN(isha) || safeIsha < isha) isha = safeIsha;
+        }
+
+        if (!Double.isNaN(m.maghribMinutes)) maghrib = sunset + m.maghribMinutes / 60;
+        if (!Double.isNaN(m.ishaMinutes)) isha = maghrib + m.ishaMinutes / 60;
+
+        out[FAJR] = toMinutes(fajr);
+        out[DHUHR] = toMinutes(dhuhr);
+        out[ASR] = toMinutes(asr);
+        out[MAGHRIB] = toEveningMinutes(maghrib, out[DHUHR]);
+        out[ISHA] = toEveningMinutes(isha, out[DHUHR]);
+    }
+
+    /**
+     * Computes the five prayer times of the given local date as epoch millis, using the
+     * zone's offset at local noon (as the API does for its HH:mm output).
+     *
+     * @throws IllegalArgumentException for a method ID the engine does not cover
+     */
+    public static void computeEpochs(int year, int month, int day, double lat, double lon,
+                                     TimeZone zone, int method, long[] out, int outOffset) {
+        Calendar c = Calendar.getInstance(zone);
+        c.clear();
+        c.set(year, month - 1, day, 12, 0, 0);
+        double tzHours = zone.getOffset(c.getTimeInMillis()) / 3_600_000.0;
+        int[] minutes = new int[PRAYER_COUNT];
+        computeMinutes(year, month, day, lat, lon, tzHours, method, minutes);
+        for (int i = 0; i < PRAYER_COUNT; i++) {
+            if (minutes[i] < 0) {
+                out[outOffset + i] = -1;
+                continue;
+            }
+            // Wall-clock fields, as PrayerSchedule.fromLocalMinutes; 1440+ is the next day
+            c.clear();
+            c.set(year, month - 1, day);
+            c.add(Calendar.DAY_OF_MONTH, minutes[i] / 1440);
+            c.set(Calendar.HOUR_OF_DAY, (minutes[i] % 1440) / 60);
+            c.set(Calendar.MINUTE, minutes[i] % 60);
+            out[outOffset + i] = c.getTimeInMillis();
+        }
+    }
+
+    public static String formatMinutes(int minutes) {
+        if (minutes < 0) return "-----";
+        int h = minutes / 60;
+        int m = minutes % 60;
+        return (h < 10 ? "0" : "") + h + ":" + (m < 10 ? "0" : "") + m;
+    }
+
+    // ---- Astronomy (PrayTimes.org) ----
+
+    private static double julian(int year, int month, int day) {
+        if (month <= 2) {
+            year -= 1;
+            month += 12;
+        }
+        double a = Math.floor(year / 100.0);
+        double b = 2 - a + Math.floor(a / 4);
+        return Math.floor(365.25 * (year + 4716)) + Math.floor(30.6001 * (month + 1)) + day + b - 1524.5;
+    }
+
+    /** Solar declination in degrees for the given Julian date. */
+    private static double declination(double jd) {
+        double d = jd - 2451545.0;
+        double g = fixAngle(357.529 + 0.98560028 * d);
+        double q = fixAngle(280.459 + 0.98564736 * d);
+        double l = fixAngle(q + 1.915 * dsin(g) + 0.020 * dsin(2 * g));
+        double e = 23.439 - 0.00000036 * d;
+        return darcsin(dsin(e) * dsin(l));
+    }
+
+    private static double equationOfTime(double jd) {
+        double d = jd - 2451545.0;
+        double g = fixAngle(357.529 + 0.98560028 * d);
+        double q = fixAngle(280.459 + 0.98564736 * d);
+        double l = fixAngle(q + 1.915 * dsin(g) + 0.020 * dsin(2 * g));
+        double e = 23.439 - 0.00000036 * d;
+        double ra = darctan2(dcos(e) * dsin(l), dcos(l)) / 15;
+        return q / 15 - fixHour(ra);
+    }
+
+    private static double midDay(double jDate, double time) {
+        return fixHour(12 - equationOfTime(jDate + time));
+    }
+
+    private static double sunAngleTime(double jDate, double lat, double angle, double time, boolean ccw) {
+        double decl = declination(jDate + time);
+        double noon = midDay(jDate, time);
+        double t = darccos((-dsin(angle) - dsin(decl) * dsin(lat)) / (dcos(decl) * dcos(lat))) / 15;
+        return noon + (ccw ? -t : t);
+    }
+
+    private static double asrTime(double jDate, double lat, double factor, double time) {
+        double decl = declination(jDate + time);
+        double angle = -darccot(factor + dtan(Math.abs(lat - decl)));
+        return sunAngleTime(jDate, lat, angle, time, false);
+    }
+
+    private static double seasonAdjustedMorning(double lat, int dayOfYear, int year) {
+        double l = Math.abs(lat);
+        return seasonal(daysSinceSolstice(dayOfYear, year, lat),
+                75 + 28.65 / 55 * l, 75 + 19.44 / 55 * l, 75 + 32.74 / 55 * l, 75 + 48.10 / 55 * l);
+    }
+
+    private static double seasonAdjustedEvening(double lat, int dayOfYear, int year) {
+        double l = Math.abs(lat);
+        return seasonal(daysSinceSolstice(dayOfYear, year, lat),
+                75 + 25.60 / 55 * l, 75 + 2.050 / 55 * l, 75 - 9.21 / 55 * l, 75 + 6.14 / 55 * l);
+    }
+
+    private static double seasonal(int dyy, double a, double b, double c, double d) {
+        if (dyy < 91) return a + (b - a) / 91 * dyy;
+        if (dyy < 137) return b + (c - b) / 46 * (dyy - 91);
+        if (dyy < 183) return c + (d - c) / 46 * (dyy - 137);
+        if (dyy < 229) return d + (c - d) / 46 * (dyy - 183);
+        if (dyy < 275) return c + (b - c) / 46 * (dyy - 229);
+        return b + (a - b) / 91 * (dyy - 275);
+    }
+
+    private static int daysSinceSolstice(int dayOfYear, int year, double lat) {
+        boolean leap = isLeap(year);
+        int daysInYear = leap ? 366 : 365;
+        int dyy;
+        if (lat >= 0) {
+            dyy = dayOfYear + (leap ? 11 : 10);
+            if (dyy >= daysInYear) dyy -= daysInYear;
+        } else {
+            dyy = dayOfYear - (leap ? 173 : 172);
+            if (dyy < 0) dyy += daysInYear;
+        }
+        return dyy;
+    }
+
+    private static int dayOfYear(int year, int month, int day) {
+        int[] cumulative = {0, 31, 59, 90, 120, 151, 181, 212, 243, 273, 304, 334};
+        return cumulative[month - 1] + day + (month > 2 && isLeap(year) ? 1 : 0);
+    }
+
+    private static boolean isLeap(int year) {
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0;
+    }
+
+    // Wrapped into the day like the other times, then moved past midnight if that put it before Dhuhr
+    private static int toEveningMinutes(double time, int dhuhrMinutes) {
+        int minutes = toMinutes(time);
+        return minutes >= 0 && minutes < dhuhrMinutes ? minutes + 1440 : minutes;
+    }
+
+    private static int toMinutes(double time) {
+        if (Double.isNaN(time)) return -1;
+        double t = fixHour(time + 0.5 / 60);
+        int hours = (int) Math.floor(t);
+        int minutes = (int) Math.floor((t - hours) * 60);
+        return hours * 60 + minutes;
+    }
+
+    private static double timeDiff(double t1, double t2) {
+        return fixHour(t2 - t1);
+    }
+
+    private static double fixAngle(double a) {
+        a = a - 360 * Math.floor(a / 360);
+        return a < 0 ? a + 360 : a;
+    }
+
+    private static double fixHour(double h) {
+        h = h - 24 * Math.floor(h / 24);
+        return h < 0 ? h + 24 : h;
+    }
+
+    private static double dsin(double d) { return Math.sin(Math.toRadians(d)); }
+    private static double dcos(double d) { return Math.cos(Math.toRadians(d)); }
+    private static double dtan(double d) { return Math.tan(Math.toRadians(d)); }
+    private static double darcsin(double x) { return Math.toDegrees(Math.asin(x)); }
+    private static double darccos(double x) { return Math.toDegrees(Math.acos(x)); }
+    private static double darctan2(double y, double x) { return Math.toDegrees(Math.atan2(y, x)); }
+    private static double darccot(double x) { return Math.toDegrees(Math.atan(1 / x)); }
+}
@@ -0,0 +1,306 @@
+package com.example.salat_time.core;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * HTTP layer for the prayer times API.
+ *
+ * Responses are cached on disk under a caller-chosen key (date, location and method), so
+ * a body inside {@code maxAgeMs} is served without touching the network. Older entries are
+ * revalidated with If-None-Match / If-Modified-Since and a 304 costs no body bytes. Bodies
+ * are requested gzip-encoded and streamed straight into the cache file, so heap use does
+ * not grow with the payload; callers read the body back from that file. Reading each
+ * response to the end lets the connection go back to the keep-alive pool.
+ *
+ * Failures back off exponentially with jitter. After {@link #BREAKER_THRESHOLD} failures
+ * in a row the breaker opens and nothing is sent for {@link #BREAKER_OPEN_MS}; then one
+ * probe goes out, and the breaker only closes again if it succeeds. The breaker state
+ * is kept in the cache directory, so it survives the widget process being killed. While
+ * the network is off limits a stale cached body is still served if there is one.
+ */
+public final class PrayerTimesFetcher {
+
+    public static final long BASE_BACKOFF_MS = 60_000L;
+    public static final long MAX_BACKOFF_MS = 30 * 60_000L;
+    public static final int BREAKER_THRESHOLD = 4;
+    public static final long BREAKER_OPEN_MS = 2 * 60 * 60_000L;
+
+    private static final int CACHE_VERSION = 2;
+    private static final String STATE_FILE = "fetch_state";
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final int TIMEOUT_MS = 8000;
+    // Keys carry the date, so old entries are dead weight; keep a few months' worth
+    private static final int MAX_ENTRIES = 16;
+
+    private final File cacheDir;
+    private final long maxAgeMs;
+    private final Random random;
+
+    private final AtomicLong networkBytes = new AtomicLong();
+
+    private int failures;
+    private long nextAttemptAt;
+    private boolean stateLoaded;
+
+    public PrayerTimesFetcher(File cacheDir, long maxAgeMs, Random random) {
+        this.cacheDir = cacheDir;
+        this.maxAgeMs = maxAgeMs;
+        this.random = random;
+    }
+
+    /**
+     * Returns a stream over the body for {@code url}, from the cache when fresh or
+     * revalidated. The caller closes it.
+     *
+     * @throws IOException if the request failed, or the fetcher is backing off, and nothing is cached
+     */
+    public synchronized InputStream open(String url, String cacheKey, long nowMs) throws IOException {
+        loadState();
+        File body = new File(cacheDir, fileName(cacheKey) + BODY_SUFFIX);
+        Meta cached = readMeta(cacheKey, body);
+        if (cached != null && nowMs - cached.fetchedAt < maxAgeMs) return new FileInputStream(body);
+        if (nowMs < nextAttemptAt) {
+            if (cached != null) return new FileInputStream(body);
+            throw new BackoffException("Backing off for " + (nextAttemptAt - nowMs) + " ms after "
+                    + failures + " failures");
+        }
+
+        // No disconnect(): once the body is read to the end the socket goes back to the pool
+        try {
+            HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+            conn.setRequestProperty("User-Agent", "SalatTimeApp/1.0");
+            conn.setRequestProperty("Accept-Encoding", "gzip");
+            conn.setConnectTimeout(TIMEOUT_MS);
+            conn.setReadTimeout(TIMEOUT_MS);
+            if (cached != null) {
+                if (!cached.etag.isEmpty()) conn.setRequestProperty("If-None-Match", cached.etag);
+                if (!cached.lastModified.isEmpty()) conn.setRequestProperty("If-Modified-Since", cached.lastModified);
+            }
+            int code = conn.getResponseCode();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && cached != null) {
+                drain(conn.getErrorStream());
+                writeMeta(cacheKey, new Meta(cached.etag, cached.lastModified, nowMs));
+                recordSuccess();
+                return new FileInputStream(body);
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                drain(conn.getErrorStream());
+                throw new IOException("HTTP " + code + " for " + url);
+            }
+            InputStream in = new CountingInputStream(conn.getInputStream());
+            if ("gzip".equalsIgnoreCase(conn.getContentEncoding())) in = new GZIPInputStream(in);
+            ensureDir();
+            File tmp = new File(cacheDir, body.getName() + ".tmp");
+            copyAndClose(in, tmp);
+            if (!tmp.renameTo(body)) throw new IOException("Failed to replace " + body);
+            writeMeta(cacheKey, new Meta(header(conn, "ETag"), header(conn, "Last-Modified"), nowMs));
+            prune();
+            recordSuccess();
+            return new FileInputStream(body);
+        } catch (IOException e) {
+            recordFailure(nowMs);
+            if (cached != null) return new FileInputStream(body);
+            throw e;
+        }
+    }
+
+    /** Body bytes received from the network so far, as sent (compressed); cache hits add nothing. */
+    public long networkBytes() {
+        return networkBytes.get();
+    }
+
+    public synchronized int failures() {
+        loadState();
+        return failures;
+    }
+
+    /** Epoch millis before which no request is sent; 0 when the network may be used now. */
+    public synchronized long nextAttemptAt() {
+        loadState();
+        return nextAttemptAt;
+    }
+
+    public synchronized boolean isBreakerOpen(long nowMs) {
+        loadState();
+        return failures >= BREAKER_THRESHOLD && nowMs < nextAttemptAt;
+    }
+
+    private void recordSuccess() {
+        if (failures == 0 && nextAttemptAt == 0) return;
+        failures = 0;
+        nextAttemptAt = 0;
+        saveState();
+    }
+
+    private void recordFailure(long nowMs) {
+        failures++;
+        long delay;
+        if (failures >= BREAKER_THRESHOLD) {
+            delay = BREAKER_OPEN_MS;
+        } else {
+            long ceiling = Math.min(MAX_BACKOFF_MS, BASE_BACKOFF_MS << (failures - 1));
+            // Equal jitter: at least half the ceiling, so retries spread out without collapsing to zero
+            delay = ceiling / 2 + (long) (random.nextDouble() * (ceiling / 2));
+        }
+        nextAttemptAt = nowMs + delay;
+        saveState();
+    }
+
+    private void loadState() {
+        if (stateLoaded) return;
+        stateLoaded = true;
+        File file = new File(cacheDir, STATE_FILE);
+        if (!file.isFile()) return;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            failures = in.readInt();
+            nextAttemptAt = in.readLong();
+        } catch (IOException ignored) {
+            failures = 0;
+            nextAttemptAt = 0;
+        }
+    }
+
+    private void saveState() {
+        try {
+            ensureDir();
+            File tmp = new File(cacheDir, STATE_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                out.writeInt(failures);
+                out.writeLong(nextAttemptAt);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            tmp.renameTo(new File(cacheDir, STATE_FILE));
+        } catch (IOException ignored) {
+            // Worst case the breaker resets with the process
+        }
+    }
+
+    private Meta readMeta(String cacheKey, File body) {
+        File file = new File(cacheDir, fileName(cacheKey) + META_SUFFIX);
+        if (!file.isFile() || !body.isFile()) return null;
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != CACHE_VERSION) return null;
+            return new Meta(in.readUTF(), in.readUTF(), in.readLong());
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    // A cache that cannot be written is not a network failure; the body is still returned
+    private void writeMeta(String cacheKey, Meta meta) {
+        try {
+            ensureDir();
+            File file = new File(cacheDir, fileName(cacheKey) + META_SUFFIX);
+            File tmp = new File(cacheDir, file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                out.writeInt(CACHE_VERSION);
+                out.writeUTF(meta.etag);
+                out.writeUTF(meta.lastModified);
+                out.writeLong(meta.fetchedAt);
+            }
+            //noinspection ResultOfMethodCallIgnored
+            tmp.renameTo(file);
+        } catch (IOException ignored) { }
+    }
+
+    private void prune() {
+        File[] metas = cacheDir.listFiles((dir, name) -> name.endsWith(META_SUFFIX));
+        if (metas == null || metas.length <= MAX_ENTRIES) return;
+        Arrays.sort(metas, (a, b) -> Long.compare(b.lastModified(), a.lastModified()));
+        for (int i = MAX_ENTRIES; i < metas.length; i++) {
+            String name = metas[i].getName();
+            String base = name.substring(0, name.length() - META_SUFFIX.length());
+            //noinspection ResultOfMethodCallIgnored
+            metas[i].delete();
+            //noinspection ResultOfMethodCallIgnored
+            new File(cacheDir, base + BODY_SUFFIX).delete();
+        }
+    }
+
+    private static String fileName(String cacheKey) {
+        return cacheKey.replaceAll("[^A-Za-z0-9._-]", "_");
+    }
+
+    private void ensureDir() throws IOException {
+        if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) throw new IOException("Cannot create " + cacheDir);
+    }
+
+    private static String header(HttpURLConnection conn, String name) {
+        String value = conn.getHeaderField(name);
+        return value != null ? value : "";
+    }
+
+    private static void copyAndClose(InputStream in, File target) throws IOException {
+        try (InputStream src = in; OutputStream out = new FileOutputStream(target)) {
+            byte[] buf = new byte[8192];
+            int n;
+            while ((n = src.read(buf)) != -1) out.write(buf, 0, n);
+        }
+    }
+
+    // Reading error bodies to the end lets HttpURLConnection reuse the connection
+    private static void drain(InputStream in) {
+        if (in == null) return;
+        try {
+            byte[] buf = new byte[1024];
+            while (in.read(buf) != -1) { }
+            in.close();
+        } catch (IOException ignored) { }
+    }
+
+    /** Thrown when the request was not sent because of back-off or an open breaker. */
+    public static final class BackoffException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        BackoffException(String message) {
+            super(message);
+        }
+    }
+
+    private final class CountingInputStream extends FilterInputStream {
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) networkBytes.incrementAndGet();
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buf, int off, int len) throws IOException {
+            int n = super.read(buf, off, len);
+            if (n > 0) networkBytes.addAndGet(n);
+            return n;
+        }
+    }
+
+    private static final class Meta {
+        final String etag;
+        final String lastModified;
+        final long fetchedAt;
+
+        Meta(String etag, String lastModified, long fetchedAt) {
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+}
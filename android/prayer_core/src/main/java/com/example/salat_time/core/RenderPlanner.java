@@ -0,0 +1,125 @@
+package com.example.salat_time.core;
+
+/**
+ * Text countdown whose resolution follows the distance to the prayer, and the timeline of
+ * instants at which that text changes.
+ *
+ * <ul>
+ *   <li>{@link #FINE_WINDOW_MS} or more left: whole minutes, "3 h 59 min", or "42 min" under
+ *       an hour. Changes once a minute.</li>
+ *   <li>Inside {@link #FINE_WINDOW_MS}: whole seconds, "42 s".</li>
+ * </ul>
+ *
+ * Every tier truncates, like the seconds of "HH:MM:SS", so the text is exact at its
+ * resolution and changes only at the instants in the plan. A widget that draws this text
+ * redraws at those instants and nowhere else: once a minute far from a prayer and once a
+ * second only at the very end, where "HH:MM:SS" on a minute tick paid the same minute redraws
+ * and still showed the wrong seconds.
+ *
+ * The plan for a target is built once and then only walked, so a tick on a steady target
+ * does not allocate.
+ */
+public final class RenderPlanner {
+
+    public static final long FINE_WINDOW_MS = 60_000L;
+    /** Longest text {@link #format(long, char[])} writes, "99 h 59 min". */
+    public static final int MAX_LENGTH = 11;
+
+    private static final long HOUR_MS = 3_600_000L;
+    private static final long MINUTE_MS = 60_000L;
+    private static final long SECOND_MS = 1_000L;
+    private static final long MAX_MINUTES = 99 * 60 + 59;
+
+    private long target = Long.MIN_VALUE;
+    private long plannedFrom;
+    private long[] changes = new long[128];
+    private int size;
+    private int cursor;
+
+    /**
+     * First instant after {@code nowMs} at which the text for {@code target} changes, or the
+     * moment the widget switches to the following prayer ({@link PrayerSchedule#NEXT_BUFFER_MS}
+     * before {@code target}) when nothing changes before that. Plans on a new target, and
+     * again if the clock was set back past the start of the plan.
+     */
+    public long nextChange(long target, long nowMs) {
+        if (target != this.target || nowMs < plannedFrom) plan(target, nowMs);
+        while (cursor < size && changes[cursor] <= nowMs) cursor++;
+        return cursor < size ? changes[cursor] : target - PrayerSchedule.NEXT_BUFFER_MS;
+    }
+
+    /** Number of text changes in the current plan. */
+    public int planned() {
+        return size;
+    }
+
+    private void plan(long target, long fromMs) {
+        this.target = target;
+        plannedFrom = fromMs;
+        size = 0;
+        cursor = 0;
+        long switchMs = target - PrayerSchedule.NEXT_BUFFER_MS;
+        long t = fromMs;
+        while (true) {
+            t = changeAfter(target, t);
+            if (t >= switchMs) break;
+            if (size == changes.length) {
+                long[] grown = new long[size * 2];
+                System.arraycopy(changes, 0, grown, 0, size);
+                changes = grown;
+            }
+            changes[size++] = t;
+        }
+    }
+
+    /** The first instant after {@code nowMs} at which the text for {@code target} differs from now. */
+    static long changeAfter(long target, long nowMs) {
+        long remaining = target - nowMs;
+        if (remaining <= 0) return Long.MAX_VALUE;
+        long step = step(remaining);
+        // Shown as remaining / step until fewer than that many steps are left
+        long shown = Math.min(remaining / step, MAX_MINUTES);
+        return target - shown * step + 1;
+    }
+
+    private static long step(long remainingMs) {
+        return remainingMs >= FINE_WINDOW_MS ? MINUTE_MS : SECOND_MS;
+    }
+
+    /** Writes the text for {@code remainingMs} (clamped to 0..99 h 59 min) into {@code out}; returns its length. */
+    public static int format(long remainingMs, char[] out) {
+        long r = Math.max(0, remainingMs);
+        if (r < FINE_WINDOW_MS) {
+            int n = twoDigits(r / SECOND_MS, out, 0);
+            out[n++] = ' ';
+            out[n++] = 's';
+            return n;
+        }
+        long minutes = Math.min(r / MINUTE_MS, MAX_MINUTES);
+        int n = 0;
+        if (r >= HOUR_MS) {
+            n = twoDigits(minutes / 60, out, n);
+            out[n++] = ' ';
+            out[n++] = 'h';
+            out[n++] = ' ';
+        }
+        n = twoDigits(minutes % 60, out, n);
+        out[n++] = ' ';
+        out[n++] = 'm';
+        out[n++] = 'i';
+        out[n++] = 'n';
+        return n;
+    }
+
+    // One or two digits, without a leading zero
+    private static int twoDigits(long value, char[] out, int n) {
+        if (value >= 10) out[n++] = (char) ('0' + value / 10);
+        out[n++] = (char) ('0' + value % 10);
+        return n;
+    }
+
+    public static String format(long remainingMs) {
+        char[] buf = new char[MAX_LENGTH];
+        return new String(buf, 0, format(remainingMs, buf));
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.salat_time.core;
+
+import java.util.Calendar;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Offset-free schedules shared between widgets, keyed by {@link #cellKey}: a quantized
+ * geo-cell, the method, the zone and the local date the schedule starts on. Every widget with
+ * a config of its own reads the schedule computed (or fetched) for its cell centre and applies
+ * its own offsets with {@link PrayerSchedule#withOffsets}, so a second widget nearby costs
+ * neither a computation nor a request. The app's own schedule is not shared: it is built for
+ * the exact location, to match the times the app shows.
+ *
+ * Bounded: once {@code maxEntries} cells are held, the least recently used one is dropped.
+ * All methods are synchronized; entries are immutable.
+ */
+public final class ScheduleCache {
+
+    // 0.05° of longitude is 12 s of solar time; the API only reports whole minutes anyway
+    public static final double CELL_DEGREES = 0.05;
+
+    private final LinkedHashMap<Long, PrayerSchedule> entries;
+    private long hits;
+    private long misses;
+
+    public ScheduleCache(int maxEntries) {
+        if (maxEntries < 1) throw new IllegalArgumentException("maxEntries must be positive: " + maxEntries);
+        // Access order, so iteration starts at the least recently used entry
+        entries = new LinkedHashMap<Long, PrayerSchedule>(maxEntries + 1, 1f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, PrayerSchedule> eldest) {
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    public synchronized PrayerSchedule get(long key) {
+        PrayerSchedule schedule = entries.get(key);
+        if (schedule != null) hits++;
+        else misses++;
+        return schedule;
+    }
+
+    public synchronized void put(long key, PrayerSchedule schedule) {
+        entries.put(key, schedule);
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /** Centre of the cell containing {@code degrees}; what the shared schedule is computed for. */
+    public static double cellCenter(double degrees) {
+        return (Math.floor(degrees / CELL_DEGREES) + 0.5) * CELL_DEGREES;
+    }
+
+    /** Identity of a shared schedule; points in the same cell on the same local date share one. */
+    public static long cellKey(double lat, double lon, int method, String zoneId, int localDate) {
+        long h = PrayerSchedule.key(cellCenter(lat), cellCenter(lon), method,
+                new int[PrayerTimesCalculator.PRAYER_COUNT], zoneId);
+        return h * 31 + localDate;
+    }
+
+    /** Local date of {@code ms} as yyyymmdd. */
+    public static int localDate(long ms, TimeZone zone) {
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(ms);
+        return c.get(Calendar.YEAR) * 10000 + (c.get(Calendar.MONTH) + 1) * 100 + c.get(Calendar.DAY_OF_MONTH);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.salat_time.core;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs at most one task per key at a time. Callers that ask for a key that is already
+ * running attach to the in-flight task and receive its result instead of starting another.
+ */
+public final class SingleFlight<K, V> {
+
+    public interface Callback<V> {
+        /** Exactly one of {@code value} / {@code error} is meaningful. */
+        void onComplete(V value, Throwable error);
+    }
+
+    private final Executor executor;
+    private final Map<K, List<Callback<V>>> inFlight = new HashMap<>();
+
+    public SingleFlight(Executor executor) {
+        this.executor = executor;
+    }
+
+    /** Returns true if this call started the task, false if it joined one already running. */
+    public boolean execute(K key, Callable<V> task, Callback<V> callback) {
+        synchronized (inFlight) {
+            List<Callback<V>> waiters = inFlight.get(key);
+            if (waiters != null) {
+                waiters.add(callback);
+                return false;
+            }
+            waiters = new ArrayList<>(2);
+            waiters.add(callback);
+            inFlight.put(key, waiters);
+        }
+        try {
+            executor.execute(() -> {
+                V value = null;
+                Throwable error = null;
+                try {
+                    value = task.call();
+                } catch (Throwable t) {
+                    error = t;
+                }
+                complete(key, value, error);
+            });
+        } catch (RejectedExecutionException e) {
+            complete(key, null, e);
+        }
+        return true;
+    }
+
+    public int inFlightCount() {
+        synchronized (inFlight) {
+            return inFlight.size();
+        }
+    }
+
+    private void complete(K key, V value, Throwable error) {
+        List<Callback<V>> waiters;
+        synchronized (inFlight) {
+            waiters = inFlight.remove(key);
+        }
+        if (waiters == null) return;
+        for (Callback<V> cb : waiters) {
+            cb.onComplete(value, error);
+        }
+    }
+}
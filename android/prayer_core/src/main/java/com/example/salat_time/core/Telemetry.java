@@ -0,0 +1,217 @@
+package com.example.salat_time.core;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Widget cost counters and log2 histograms.
+ *
+ * Recording is one atomic add into a fixed array, with no locks and no allocation, so it
+ * is safe on the tick path from any thread. Histogram bucket {@code b} counts values in
+ * {@code [2^(b-1), 2^b)}; bucket 0 counts zero and negatives. Snapshots go to JSON only when
+ * persisted or dumped, and {@link #fromJson} restores them after a process restart.
+ */
+public final class Telemetry {
+
+    public static final int TICKS = 0;
+    public static final int WAKEUPS = 1;
+    public static final int REFRESH_STARTED = 2;
+    public static final int REFRESH_JOINED = 3;
+    public static final int REFRESH_OK = 4;
+    public static final int FAIL_NETWORK = 5;
+    public static final int FAIL_BACKOFF = 6;
+    public static final int FAIL_PARSE = 7;
+    public static final int FAIL_OTHER = 8;
+    public static final int BYTES_FETCHED = 9;
+    public static final int RENDER_FULL = 10;
+    public static final int RENDER_PARTIAL = 11;
+    public static final int RENDER_SKIPPED = 12;
+    public static final int PREFETCH_RUN = 13;
+    public static final int PREFETCH_SKIPPED = 14;
+    public static final int REFRESH_DEFERRED = 15;
+    public static final int CELL_HIT = 16;
+    public static final int CELL_MISS = 17;
+    public static final int RECEIVE_OVER_BUDGET = 18;
+
+    public static final int TICK_MICROS = 0;
+    public static final int REFRESH_MILLIS = 1;
+    public static final int FETCH_BYTES = 2;
+    public static final int RECEIVE_MAIN_MICROS = 3;
+
+    public static final int BUCKETS = 32;
+
+    private static final int VERSION = 1;
+    private static final String[] COUNTER_NAMES = {
+            "ticks", "wakeups", "refresh_started", "refresh_joined", "refresh_ok",
+            "fail_network", "fail_backoff", "fail_parse", "fail_other", "bytes_fetched",
+            "render_full", "render_partial", "render_skipped",
+            "prefetch_run", "prefetch_skipped", "refresh_deferred", "cell_hit", "cell_miss",
+            "receive_over_budget",
+    };
+    private static final String[] HISTOGRAM_NAMES = {"tick_us", "refresh_ms", "fetch_bytes", "receive_main_us"};
+
+    private final AtomicLongArray counters = new AtomicLongArray(COUNTER_NAMES.length);
+    private final AtomicLongArray buckets = new AtomicLongArray(HISTOGRAM_NAMES.length * BUCKETS);
+    private volatile long sinceMs;
+
+    // Wake-ups per local day (yyyymmdd); rolls over at most once a day, so a lock is fine
+    private int wakeupDay;
+    private long wakeupsToday;
+    private long wakeupsPreviousDay;
+
+    public Telemetry(long sinceMs) {
+        this.sinceMs = sinceMs;
+    }
+
+    public void increment(int counter) {
+        counters.incrementAndGet(counter);
+    }
+
+    public void add(int counter, long delta) {
+        counters.addAndGet(counter, delta);
+    }
+
+    public void record(int histogram, long value) {
+        buckets.incrementAndGet(histogram * BUCKETS + bucketOf(value));
+    }
+
+    public long count(int counter) {
+        return counters.get(counter);
+    }
+
+    public long bucket(int histogram, int bucket) {
+        return buckets.get(histogram * BUCKETS + bucket);
+    }
+
+    public long samples(int histogram) {
+        long n = 0;
+        for (int b = 0; b < BUCKETS; b++) n += bucket(histogram, b);
+        return n;
+    }
+
+    /**
+     * Upper bound (exclusive) of the bucket holding the {@code fraction} quantile, e.g. 0.99
+     * for p99; -1 with no samples.
+     */
+    public long quantileUpperBound(int histogram, double fraction) {
+        long total = samples(histogram);
+        if (total == 0) return -1;
+        long rank = (long) Math.ceil(fraction * total);
+        long seen = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            seen += bucket(histogram, b);
+            if (seen >= rank) return b == 0 ? 1 : 1L << b;
+        }
+        return Long.MAX_VALUE;
+    }
+
+    /** Counts one alarm wake-up on local day {@code yyyymmdd}; returns that day's count so far. */
+    public synchronized long recordWakeup(int yyyymmdd) {
+        counters.incrementAndGet(WAKEUPS);
+        if (yyyymmdd != wakeupDay) {
+            wakeupsPreviousDay = wakeupDay == 0 ? 0 : wakeupsToday;
+            wakeupDay = yyyymmdd;
+            wakeupsToday = 0;
+        }
+        return ++wakeupsToday;
+    }
+
+    public synchronized long wakeupsPreviousDay() {
+        return wakeupsPreviousDay;
+    }
+
+    public long sinceMs() {
+        return sinceMs;
+    }
+
+    public synchronized void reset(long nowMs) {
+        for (int i = 0; i < counters.length(); i++) counters.set(i, 0);
+        for (int i = 0; i < buckets.length(); i++) buckets.set(i, 0);
+        wakeupDay = 0;
+        wakeupsToday = 0;
+        wakeupsPreviousDay = 0;
+        sinceMs = nowMs;
+    }
+
+    static int bucketOf(long value) {
+        return value <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value));
+    }
+
+    public synchronized String toJson() {
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append("{\"version\":").append(VERSION).append(",\"since\":").append(sinceMs).append(",\"counters\":{");
+        for (int i = 0; i < COUNTER_NAMES.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append('"').append(COUNTER_NAMES[i]).append("\":").append(counters.get(i));
+        }
+        sb.append("},\"histograms\":{");
+        for (int h = 0; h < HISTOGRAM_NAMES.length; h++) {
+            if (h > 0) sb.append(',');
+            sb.append('"').append(HISTOGRAM_NAMES[h]).append("\":[");
+            for (int b = 0; b < BUCKETS; b++) {
+                if (b > 0) sb.append(',');
+                sb.append(bucket(h, b));
+            }
+            sb.append(']');
+        }
+        sb.append("},\"wakeups\":{\"day\":").append(wakeupDay)
+                .append(",\"today\":").append(wakeupsToday)
+                .append(",\"previous_day\":").append(wakeupsPreviousDay).append("}}");
+        return sb.toString();
+    }
+
+    /** Restores a snapshot written by {@link #toJson}; names it does not know are skipped. */
+    public static Telemetry fromJson(String json) throws IOException {
+        Telemetry t = new Telemetry(0);
+        try (JsonPullReader r = new JsonPullReader(new StringReader(json))) {
+            r.beginObject();
+            while (r.hasNext()) {
+                String name = r.nextName();
+                if ("since".equals(name)) {
+                    t.sinceMs = Long.parseLong(r.nextString());
+                } else if ("counters".equals(name)) {
+                    r.beginObject();
+                    while (r.hasNext()) {
+                        int i = r.nextName(COUNTER_NAMES);
+                        if (i >= 0) t.counters.set(i, Long.parseLong(r.nextString()));
+                        else r.skipValue();
+                    }
+                    r.endObject();
+                } else if ("histograms".equals(name)) {
+                    r.beginObject();
+                    while (r.hasNext()) {
+                        int h = r.nextName(HISTOGRAM_NAMES);
+                        if (h < 0) {
+                            r.skipValue();
+                            continue;
+                        }
+                        r.beginArray();
+                        for (int b = 0; r.hasNext(); b++) {
+                            long v = Long.parseLong(r.nextString());
+                            if (b < BUCKETS) t.buckets.set(h * BUCKETS + b, v);
+                        }
+                        r.endArray();
+                    }
+                    r.endObject();
+                } else if ("wakeups".equals(name)) {
+                    r.beginObject();
+                    while (r.hasNext()) {
+                        String key = r.nextName();
+                        long v = Long.parseLong(r.nextString());
+                        if ("day".equals(key)) t.wakeupDay = (int) v;
+                        else if ("today".equals(key)) t.wakeupsToday = v;
+                        else if ("previous_day".equals(key)) t.wakeupsPreviousDay = v;
+                    }
+                    r.endObject();
+                } else {
+                    r.skipValue();
+                }
+            }
+            r.endObject();
+        } catch (NumberFormatException | IllegalStateException e) {
+            throw new IOException("Bad telemetry snapshot", e);
+        }
+        return t;
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.salat_time.core;
+
+import java.util.TimeZone;
+
+/**
+ * Where the widget reads the time. The app uses the device clocks; the simulation harness in
+ * the tests drives one by hand to replay a year of ticks, DST jumps and zone changes in
+ * seconds.
+ */
+public interface WidgetClock {
+
+    /** Wall-clock time, as {@link System#currentTimeMillis()}. */
+    long currentTimeMillis();
+
+    /** Monotonic time since boot; the timebase of Chronometer and of durations. */
+    long elapsedRealtime();
+
+    /** The device's current time zone. */
+    TimeZone zone();
+}
@@ -0,0 +1,260 @@
+package com.example.salat_time.core;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Everything the widget needs, in one fixed-layout binary file: location, method, offsets,
+ * the schedule built from them and the last prayer shown.
+ *
+ * Only the widget writes it; the app (Dart, lib/services/widget_snapshot.dart) sends its
+ * changes over the widget channel. Writes go to a temp file that is then renamed over the old
+ * one, so a reader sees either the old or the new snapshot and never half of each. {@link #generation()} goes up whenever the location,
+ * method or offsets change; a schedule is only valid for the generation it was stamped with,
+ * which is what keeps a stale schedule from being shown for new settings.
+ *
+ * Layout (little endian):
+ * <pre>
+ *  0 magic int          4 version int        8 generation int     12 method int
+ * 16 latitude double   24 longitude double  32 offsets int[5]
+ * 52 shown prayer int  56 shown target long 64 updated at long
+ * 72 schedule key long 80 schedule stamp int 84 count int       88 epochs long[count]
+ * </pre>
+ * Latitude is NaN until the app has a location. Shown prayer is -1 when nothing was shown.
+ */
+public final class WidgetSnapshot {
+
+    public static final String FILE_NAME = "widget_snapshot.bin";
+    public static final int NO_PRAYER = -1;
+
+    static final int MAGIC = 0x534c5432; // "SLT2"
+    static final int VERSION = 1;
+    static final int HEADER_BYTES = 88;
+    private static final int GENERATION_OFFSET = 8;
+    private static final int UPDATED_AT_OFFSET = 64;
+    // A year of days is far more than either side keeps; anything larger is a foreign file
+    private static final int MAX_EPOCHS = 366 * PrayerTimesCalculator.PRAYER_COUNT;
+
+    private final int generation;
+    private final double lat;
+    private final double lon;
+    private final int method;
+    private final int[] offsets;
+    private final int shownPrayer;
+    private final long shownTarget;
+    private final long updatedAt;
+    private final PrayerSchedule schedule;
+
+    public WidgetSnapshot(int generation, double lat, double lon, int method, int[] offsets,
+                          int shownPrayer, long shownTarget, long updatedAt, PrayerSchedule schedule) {
+        if (offsets.length != PrayerTimesCalculator.PRAYER_COUNT) {
+            throw new IllegalArgumentException("offsets must hold one entry per prayer: " + offsets.length);
+        }
+        this.generation = generation;
+        this.lat = lat;
+        this.lon = lon;
+        this.method = method;
+        this.offsets = offsets;
+        this.shownPrayer = shownPrayer;
+        this.shownTarget = shownTarget;
+        this.updatedAt = updatedAt;
+        this.schedule = schedule;
+    }
+
+    public int generation() {
+        return generation;
+    }
+
+    public boolean hasLocation() {
+        return !Double.isNaN(lat) && !Double.isNaN(lon);
+    }
+
+    public double lat() {
+        return lat;
+    }
+
+    public double lon() {
+        return lon;
+    }
+
+    public int method() {
+        return method;
+    }
+
+    public int[] offsets() {
+        return offsets;
+    }
+
+    public int shownPrayer() {
+        return shownPrayer;
+    }
+
+    public long shownTarget() {
+        return shownTarget;
+    }
+
+    public long updatedAt() {
+        return updatedAt;
+    }
+
+    /** The stored schedule, or null if there is none or it was built for older settings. */
+    public PrayerSchedule schedule() {
+        return schedule != null && schedule.settingsStamp() == generation ? schedule : null;
+    }
+
+    /** True when location, method and offsets match, so a schedule built for one fits the other. */
+    public boolean sameSettings(WidgetSnapshot other) {
+        return Double.compare(lat, other.lat) == 0 && Double.compare(lon, other.lon) == 0
+                && method == other.method && Arrays.equals(offsets, other.offsets);
+    }
+
+    /** The same snapshot under {@code generation}, with its schedule (if any) stamped to match. */
+    public WidgetSnapshot restamp(int generation) {
+        PrayerSchedule s = schedule != null
+                ? new PrayerSchedule(schedule.key(), generation, schedule.epochs()) : null;
+        return new WidgetSnapshot(generation, lat, lon, method, offsets, shownPrayer, shownTarget, updatedAt, s);
+    }
+
+    /**
+     * New location, method or offsets under the next generation, with {@code schedule} built
+     * for them (null when it has to be fetched first). Returns this snapshot when nothing changed.
+     */
+    public WidgetSnapshot withSettings(double lat, double lon, int method, int[] offsets,
+                                       PrayerSchedule schedule, long nowMs) {
+        WidgetSnapshot next = new WidgetSnapshot(generation + 1, lat, lon, method, offsets,
+                shownPrayer, shownTarget, nowMs, null);
+        if (sameSettings(next)) return this;
+        return schedule != null ? next.withSchedule(schedule, nowMs).restamp(generation + 1) : next;
+    }
+
+    /** Same settings with a new schedule and the prayer it shows at {@code nowMs}. */
+    public WidgetSnapshot withSchedule(PrayerSchedule schedule, long nowMs) {
+        int idx = schedule.indexOfNext(nowMs);
+        return new WidgetSnapshot(generation, lat, lon, method, offsets,
+                idx >= 0 ? schedule.prayerAt(idx) : NO_PRAYER, idx >= 0 ? schedule.epochAt(idx) : -1,
+                nowMs, schedule);
+    }
+
+    /** Same settings and schedule with {@code prayer} at {@code target} as the last one shown. */
+    public WidgetSnapshot withShown(int prayer, long target) {
+        return new WidgetSnapshot(generation, lat, lon, method, offsets, prayer, target, updatedAt, schedule);
+    }
+
+    /** Same settings and shown prayer with the schedule dropped, e.g. after a time-zone change. */
+    public WidgetSnapshot withoutSchedule(long nowMs) {
+        return new WidgetSnapshot(generation, lat, lon, method, offsets, shownPrayer, shownTarget, nowMs, null);
+    }
+
+    public byte[] toBytes() {
+        long[] epochs = schedule != null ? schedule.epochs() : new long[0];
+        ByteBuffer buf = ByteBuffer.allocate(HEADER_BYTES + epochs.length * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(MAGIC).putInt(VERSION).putInt(generation).putInt(method)
+                .putDouble(lat).putDouble(lon);
+        for (int off : offsets) buf.putInt(off);
+        buf.putInt(shownPrayer).putLong(shownTarget).putLong(updatedAt)
+                .putLong(schedule != null ? schedule.key() : 0)
+                .putInt(schedule != null ? schedule.settingsStamp() : 0)
+                .putInt(epochs.length);
+        buf.asLongBuffer().put(epochs);
+        return buf.array();
+    }
+
+    /** Decodes {@code length} bytes; returns null if they are not a snapshot in this version. */
+    public static WidgetSnapshot fromBytes(byte[] data, int length) {
+        return decode(data, length, true);
+    }
+
+    private static WidgetSnapshot decode(byte[] data, int length, boolean withSchedule) {
+        if (length < HEADER_BYTES) return null;
+        ByteBuffer buf = ByteBuffer.wrap(data, 0, length).order(ByteOrder.LITTLE_ENDIAN);
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+        int generation = buf.getInt();
+        int method = buf.getInt();
+        double lat = buf.getDouble();
+        double lon = buf.getDouble();
+        int[] offsets = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        for (int i = 0; i < offsets.length; i++) offsets[i] = buf.getInt();
+        int shownPrayer = buf.getInt();
+        long shownTarget = buf.getLong();
+        long updatedAt = buf.getLong();
+        long key = buf.getLong();
+        int stamp = buf.getInt();
+        int count = buf.getInt();
+        if (count < 0 || count > MAX_EPOCHS || count % PrayerTimesCalculator.PRAYER_COUNT != 0
+                || withSchedule && buf.remaining() < count * 8L) {
+            return null;
+        }
+        PrayerSchedule schedule = null;
+        if (withSchedule && count > 0) {
+            long[] epochs = new long[count];
+            buf.asLongBuffer().get(epochs);
+            schedule = new PrayerSchedule(key, stamp, epochs);
+        }
+        return new WidgetSnapshot(generation, lat, lon, method, offsets, shownPrayer, shownTarget,
+                updatedAt, schedule);
+    }
+
+    /** Reads the file in one go; returns null if it is missing or not a snapshot in this version. */
+    public static WidgetSnapshot read(File file) throws IOException {
+        long size = file.length();
+        if (!file.isFile() || size < HEADER_BYTES || size > HEADER_BYTES + MAX_EPOCHS * 8L) return null;
+        byte[] data = new byte[(int) size];
+        return fromBytes(data, readFully(file, data));
+    }
+
+    /**
+     * Settings and last shown prayer from the {@value #HEADER_BYTES}-byte header alone, without
+     * the schedule; null if the file is missing or not a snapshot in this version. Cheap enough
+     * to show something before the whole file has been read.
+     */
+    public static WidgetSnapshot readHeader(File file) throws IOException {
+        if (!file.isFile()) return null;
+        byte[] header = new byte[HEADER_BYTES];
+        return decode(header, readFully(file, header), false);
+    }
+
+    /**
+     * True when {@code file} still starts with the generation and updated-at of {@code snapshot}.
+     * Only those header fields are read, so a caller holding a decoded snapshot can tell a
+     * same-size rewrite within the file system's timestamp resolution from no change at all.
+     */
+    public static boolean sameHeader(File file, WidgetSnapshot snapshot) throws IOException {
+        byte[] header = new byte[UPDATED_AT_OFFSET + 8];
+        if (readFully(file, header) < header.length) return false;
+        ByteBuffer buf = ByteBuffer.wrap(header).order(ByteOrder.LITTLE_ENDIAN);
+        return buf.getInt(GENERATION_OFFSET) == snapshot.generation
+                && buf.getLong(UPDATED_AT_OFFSET) == snapshot.updatedAt;
+    }
+
+    // Up to data.length bytes from the start of the file; returns how many there were
+    private static int readFully(File file, byte[] data) throws IOException {
+        int n = 0;
+        try (FileInputStream in = new FileInputStream(file)) {
+            int r;
+            while (n < data.length && (r = in.read(data, n, data.length - n)) > 0) n += r;
+        }
+        return n;
+    }
+
+    /**
+     * Replaces {@code file} atomically: the bytes go to a sibling temp file, are synced, and
+     * the temp file is renamed over the target.
+     */
+    public static void write(File file, WidgetSnapshot snapshot) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (FileOutputStream out = new FileOutputStream(tmp)) {
+            out.write(snapshot.toBytes());
+            out.getFD().sync();
+        }
+        if (!tmp.renameTo(file)) {
+            //noinspection ResultOfMethodCallIgnored
+            tmp.delete();
+            throw new IOException("Failed to replace " + file);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.salat_time.core;
+
+import java.util.Arrays;
+import java.util.TimeZone;
+
+/**
+ * What one widget broadcast decides, shared by the provider and {@code WidgetSimulation}:
+ * the {@link NextPrayerTracker} update, whether the schedule has to be rebuilt or topped up,
+ * and when the single alarm fires next and whether it wakes the device.
+ *
+ * Rendering and the rebuild itself stay with the caller. Not thread-safe; the provider only
+ * touches its instance from the widget worker.
+ */
+public final class WidgetTick {
+
+    // Refresh once fewer than this many whole days remain in the schedule
+    public static final int MIN_DAYS_AHEAD = 1;
+
+    private final NextPrayerTracker tracker = new NextPrayerTracker();
+    // Text timeline per entry of the schedules passed to planAlarm. A planner replans when its
+    // entry's target moves on and otherwise just walks its plan.
+    private RenderPlanner[] plans = new RenderPlanner[0];
+    private boolean shown;
+    private boolean alarmWakes;
+
+    public NextPrayerTracker tracker() {
+        return tracker;
+    }
+
+    /**
+     * Moves the tracker to {@code nowMs}.
+     *
+     * @return true when there is a next prayer to show; see {@link #needsRefresh()} for
+     *         whether the schedule must be rebuilt anyway
+     */
+    public boolean update(long nowMs, int settingsStamp) {
+        shown = tracker.update(nowMs, settingsStamp);
+        return shown;
+    }
+
+    /** True after {@link #update} when there was nothing to show or the window is about to run out. */
+    public boolean needsRefresh() {
+        return !shown || tracker.daysRemaining() < MIN_DAYS_AHEAD;
+    }
+
+    /**
+     * Next instant any of {@code schedules} must be redrawn ({@link AlarmBoundary#next}); a
+     * null entry stands for a widget still waiting for one. Without a system countdown it is
+     * the next {@link RenderPlanner} text change of a target on screen if that comes first;
+     * {@link #alarmWakes()} then reports false.
+     */
+    public long planAlarm(PrayerSchedule[] schedules, long nowMs, TimeZone zone, boolean systemCountdown) {
+        long boundary = Long.MAX_VALUE;
+        for (PrayerSchedule schedule : schedules) boundary = Math.min(boundary, AlarmBoundary.next(schedule, nowMs, zone));
+        alarmWakes = true;
+        if (systemCountdown) return boundary;
+        long textChange = nextTextChange(schedules, nowMs);
+        if (textChange >= boundary) return boundary;
+        alarmWakes = false;
+        return textChange;
+    }
+
+    /** Whether the last {@link #planAlarm} is a prayer or midnight boundary rather than a text redraw. */
+    public boolean alarmWakes() {
+        return alarmWakes;
+    }
+
+    /** True when {@code schedule} has a next prayer and at least {@code minDaysAhead} days after it. */
+    public static boolean covers(PrayerSchedule schedule, long nowMs, int minDaysAhead) {
+        int idx = schedule != null ? schedule.indexOfNext(nowMs) : -1;
+        return idx >= 0 && schedule.daysRemainingAfter(idx) >= minDaysAhead;
+    }
+
+    // Earliest text change of any target on screen
+    private long nextTextChange(PrayerSchedule[] schedules, long nowMs) {
+        if (plans.length < schedules.length) plans = Arrays.copyOf(plans, schedules.length);
+        long next = Long.MAX_VALUE;
+        for (int i = 0; i < schedules.length; i++) {
+            PrayerSchedule schedule = schedules[i];
+            int idx = schedule != null ? schedule.indexOfNext(nowMs) : -1;
+            if (idx < 0) continue;
+            if (plans[i] == null) plans[i] = new RenderPlanner();
+            next = Math.min(next, plans[i].nextChange(schedule.epochAt(idx), nowMs));
+        }
+        return next;
+    }
+}
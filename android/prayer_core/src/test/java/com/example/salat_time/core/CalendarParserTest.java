@@ -0,0 +1,102 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Calendar;
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class CalendarParserTest {
+
+    // A month in /v1/calendar shape, including meta, hijri and escaped strings. The times are
+    // synthetic, not a captured response; this tests parsing, not the engine.
+    private static final String MARCH = "aladhan_calendar_stockholm_2026_03.json";
+    private static final TimeZone STOCKHOLM = TimeZone.getTimeZone("Europe/Stockholm");
+    private static final int COUNT = PrayerTimesCalculator.PRAYER_COUNT;
+
+    private static int parse(String resource, int year, int month, int[] out, int firstSlot) throws IOException {
+        InputStream in = CalendarParserTest.class.getClassLoader().getResourceAsStream(resource);
+        return CalendarParser.parseMonth(new InputStreamReader(in, StandardCharsets.UTF_8), year, month, out, firstSlot);
+    }
+
+    @Test
+    public void parsesEveryDayOfTheMonth() throws IOException {
+        int[] minutes = new int[31 * COUNT];
+        assertEquals(31, parse(MARCH, 2026, 3, minutes, 0));
+        // 1 March: 04:29 (CET) ... 19:24 (CET)
+        assertEquals(4 * 60 + 29, minutes[PrayerTimesCalculator.FAJR]);
+        assertEquals(19 * 60 + 24, minutes[PrayerTimesCalculator.ISHA]);
+        // 29 March, after the switch to CEST
+        assertEquals(12 * 60 + 53, minutes[28 * COUNT + PrayerTimesCalculator.DHUHR]);
+        assertEquals(21 * 60 + 50, minutes[30 * COUNT + PrayerTimesCalculator.ISHA]);
+    }
+
+    @Test
+    public void buildsScheduleAcrossDaylightSavingSwitch() throws IOException {
+        int[] minutes = new int[31 * COUNT];
+        parse(MARCH, 2026, 3, minutes, 0);
+        PrayerSchedule s = PrayerSchedule.fromLocalMinutes(minutes, 27, 4, 2026, 3, 28,
+                new int[COUNT], STOCKHOLM, 1L, 0);
+        assertEquals(4, s.days());
+        Calendar c = Calendar.getInstance(STOCKHOLM);
+        c.setTimeInMillis(s.epochAt(COUNT + PrayerTimesCalculator.DHUHR));
+        assertEquals(29, c.get(Calendar.DAY_OF_MONTH));
+        assertEquals(12, c.get(Calendar.HOUR_OF_DAY));
+        assertEquals(53, c.get(Calendar.MINUTE));
+        for (int i = 1; i < s.size(); i++) assertTrue(s.epochAt(i) > s.epochAt(i - 1));
+    }
+
+    @Test
+    public void writesAtRequestedSlot() throws IOException {
+        int[] minutes = new int[62 * COUNT];
+        assertEquals(31, parse(MARCH, 2026, 3, minutes, 28));
+        assertEquals(4 * 60 + 29, minutes[28 * COUNT + PrayerTimesCalculator.FAJR]);
+        assertEquals(0, minutes[27 * COUNT + PrayerTimesCalculator.ISHA]);
+    }
+
+    @Test
+    public void rejectsErrorResponsesAndWrongMonth() {
+        String error = "{\"code\":400,\"status\":\"BAD_REQUEST\",\"data\":\"Please specify a valid latitude\"}";
+        try {
+            CalendarParser.parseMonth(new StringReader(error), 2026, 3, new int[31 * COUNT], 0);
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+        try {
+            parse(MARCH, 2026, 4, new int[31 * COUNT], 0);
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void reportsUnexpectedShapeAsFormatError() {
+        String[] bad = {"{\"code\":200,\"data\":{\"timings\":1}}", "{\"code\":\"x\"}", "{\"code\":200,\"data\":[{\"timings\":"};
+        for (String json : bad) {
+            try {
+                CalendarParser.parseMonth(new StringReader(json), 2026, 3, new int[31 * COUNT], 0);
+                fail("accepted " + json);
+            } catch (CalendarParser.FormatException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsMissingPrayer() {
+        String json = "{\"code\":200,\"data\":[{\"timings\":{\"Fajr\":\"05:00\",\"Dhuhr\":\"12:00\","
+                + "\"Asr\":\"15:00\",\"Maghrib\":\"18:00\"},\"date\":{\"gregorian\":{\"date\":\"01-03-2026\"}}}]}";
+        try {
+            CalendarParser.parseMonth(new StringReader(json), 2026, 3, new int[31 * COUNT], 0);
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("Isha"));
+        }
+    }
+}
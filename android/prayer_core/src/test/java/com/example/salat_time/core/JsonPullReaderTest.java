@@ -0,0 +1,214 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+public class JsonPullReaderTest {
+
+    @Test
+    public void readsNestedValuesAndSkipsTheRest() throws IOException {
+        String json = " { \"skip\" : {\"a\":[1,2,{\"b\":\"}]\\\"\"}],\"c\":null},"
+                + "\"n\": -12 , \"s\":\"x\\u00e9\\n\", \"t\":true, \"arr\":[ ] }";
+        JsonPullReader r = new JsonPullReader(new StringReader(json));
+        r.beginObject();
+        assertEquals("skip", r.nextName());
+        r.skipValue();
+        assertEquals("n", r.nextName());
+        assertEquals(-12, r.nextInt());
+        assertEquals("s", r.nextName());
+        assertEquals("xé\n", r.nextString());
+        assertEquals("t", r.nextName());
+        assertEquals(JsonPullReader.Token.BOOLEAN, r.peek());
+        assertEquals("true", r.nextString());
+        assertEquals("arr", r.nextName());
+        r.beginArray();
+        assertFalse(r.hasNext());
+        r.endArray();
+        assertFalse(r.hasNext());
+        r.endObject();
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, r.peek());
+    }
+
+    @Test
+    public void readsAcrossBufferBoundaries() throws IOException {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 1000; i++) {
+            if (i > 0) sb.append(',');
+            sb.append("{\"i\":").append(i).append(",\"pad\":\"").append("abcdefgh".substring(i % 8)).append("\"}");
+        }
+        sb.append(']');
+        JsonPullReader r = new JsonPullReader(new StringReader(sb.toString()));
+        r.beginArray();
+        int expected = 0;
+        while (r.hasNext()) {
+            r.beginObject();
+            assertEquals("i", r.nextName());
+            assertEquals(expected++, r.nextInt());
+            assertEquals("pad", r.nextName());
+            r.skipValue();
+            r.endObject();
+        }
+        r.endArray();
+        assertEquals(1000, expected);
+    }
+
+    @Test
+    public void rejectsMalformedInput() {
+        String[] bad = {"{\"a\" 1}", "{\"a\":1,}", "[1 2]", "{\"a\":", "{\"a\":1} x"};
+        for (String json : bad) {
+            try {
+                JsonPullReader r = new JsonPullReader(new StringReader(json));
+                r.beginObject();
+                while (r.hasNext()) {
+                    r.nextName();
+                    r.skipValue();
+                }
+                r.endObject();
+                r.peek();
+                fail("accepted " + json);
+            } catch (IOException | IllegalStateException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void rejectsBrokenStringsWhetherReadOrSkipped() throws IOException {
+        String[] truncated = {"{\"a\":\"\\u00", "{\"a\":\"\\", "{\"a\":\"abc", "{\"a\":\"abc}", "{\"ab"};
+        for (String json : truncated) {
+            for (boolean skip : new boolean[]{false, true}) {
+                try {
+                    readAll(json, skip);
+                    fail("accepted " + json);
+                } catch (EOFException expected) {
+                }
+            }
+        }
+        // Not hex: the closing quote must not be taken as a digit
+        for (boolean skip : new boolean[]{false, true}) {
+            try {
+                readAll("{\"a\":\"\\u00\"}", skip);
+                fail("accepted a short \\u escape");
+            } catch (IOException e) {
+                assertTrue(e.getMessage(), e.getMessage().startsWith("Bad \\u escape"));
+            }
+        }
+    }
+
+    @Test
+    public void nestsDeeperThanItsInitialStack() throws IOException {
+        int depth = 40;
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < depth; i++) sb.append("[{\"k\":");
+        sb.append("\"deep\"");
+        for (int i = 0; i < depth; i++) sb.append("},1]");
+        String json = sb.toString();
+
+        JsonPullReader r = new JsonPullReader(new StringReader(json));
+        for (int i = 0; i < depth; i++) {
+            r.beginArray();
+            r.beginObject();
+            assertEquals("k", r.nextName());
+        }
+        assertEquals("deep", r.nextString());
+        for (int i = 0; i < depth; i++) {
+            r.endObject();
+            assertEquals(1, r.nextInt());
+            r.endArray();
+        }
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, r.peek());
+
+        r = new JsonPullReader(new StringReader(json));
+        r.skipValue();
+        assertEquals(JsonPullReader.Token.END_DOCUMENT, r.peek());
+
+        // Cut off in the middle, at any depth
+        String cut = json.substring(0, json.length() / 2);
+        for (boolean skip : new boolean[]{false, true}) {
+            r = new JsonPullReader(new StringReader(cut));
+            try {
+                if (skip) {
+                    r.skipValue();
+                } else {
+                    for (int i = 0; i < depth; i++) {
+                        r.beginArray();
+                        r.beginObject();
+                        r.nextName();
+                    }
+                    r.nextString();
+                    while (true) {
+                        r.endObject();
+                        r.nextInt();
+                        r.endArray();
+                    }
+                }
+                fail("accepted a truncated document");
+            } catch (EOFException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void nextNameMatchesKnownNamesWithoutAllocating() throws IOException {
+        String[] names = {"timings", "date"};
+        JsonPullReader r = new JsonPullReader(new StringReader(
+                "{\"date\":1,\"d\\u0061te\":2,\"dat\":3,\"dates\":4,\"timings\":5}"));
+        r.beginObject();
+        int[] expected = {1, 1, -1, -1, 0};
+        for (int index : expected) {
+            assertEquals(index, r.nextName(names));
+            r.skipValue();
+        }
+        r.endObject();
+
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < 10_000; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(i % 3 == 0 ? "\"timings\"" : i % 3 == 1 ? "\"date\"" : "\"meta\"").append(":0");
+        }
+        String json = sb.append('}').toString();
+        int sink = matchAll(json, names);
+
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long before = mx.getThreadAllocatedBytes(threadId);
+        sink += matchAll(json, names);
+        long allocated = mx.getThreadAllocatedBytes(threadId) - before;
+        assertEquals(2 * 6667, sink);
+        // A String per key is about 800 KB here
+        assertTrue("allocated " + allocated + " bytes", allocated < 16 * 1024);
+    }
+
+    // How many keys of a flat object are among names
+    private static int matchAll(String json, String[] names) throws IOException {
+        JsonPullReader r = new JsonPullReader(new StringReader(json));
+        int sum = 0;
+        r.beginObject();
+        while (r.hasNext()) {
+            if (r.nextName(names) >= 0) sum++;
+            r.skipValue();
+        }
+        r.endObject();
+        return sum;
+    }
+
+    // Reads every name and value of a flat object, reading or skipping the values
+    private static void readAll(String json, boolean skip) throws IOException {
+        JsonPullReader r = new JsonPullReader(new StringReader(json));
+        r.beginObject();
+        while (r.hasNext()) {
+            r.nextName();
+            if (skip) r.skipValue();
+            else r.nextString();
+        }
+        r.endObject();
+        r.peek();
+    }
+}
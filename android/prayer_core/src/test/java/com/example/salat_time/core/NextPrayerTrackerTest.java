@@ -0,0 +1,105 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class NextPrayerTrackerTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Asia/Riyadh");
+    private static final long START = 1_792_195_200_000L; // 2026-10-17T00:00:00Z
+
+    private static PrayerSchedule schedule(int stamp) {
+        return PrayerSchedule.compute(21.4225, 39.8262, 4, new int[PrayerTimesCalculator.PRAYER_COUNT],
+                ZONE, START, PrayerSchedule.DEFAULT_DAYS, stamp);
+    }
+
+    @Test
+    public void stampMismatchInvalidates() {
+        NextPrayerTracker tracker = new NextPrayerTracker();
+        tracker.setSchedule(schedule(7));
+        assertTrue(tracker.update(START + 3_600_000, 7));
+        assertFalse(tracker.update(START + 3_600_000, 8));
+        tracker.invalidate();
+        assertFalse(tracker.update(START + 3_600_000, 7));
+    }
+
+    @Test
+    public void tracksSameAnswerAsBinarySearchAcrossDays() {
+        PrayerSchedule s = schedule(1);
+        NextPrayerTracker tracker = new NextPrayerTracker();
+        tracker.setSchedule(s);
+        for (long now = START; now < START + 3L * 86_400_000; now += 60_000) {
+            assertTrue(tracker.update(now, 1));
+            int idx = s.indexOfNext(now);
+            assertEquals(s.epochAt(idx), tracker.target());
+            assertEquals(s.prayerAt(idx), tracker.prayer());
+        }
+    }
+
+    @Test
+    public void countdownTextIsReusedUntilItChanges() {
+        NextPrayerTracker tracker = new NextPrayerTracker();
+        tracker.setSchedule(schedule(1));
+        tracker.update(START, 1);
+        // Half a second into the minute tier's "30 min"
+        long now = tracker.target() - 30 * 60_000 - 500;
+        tracker.update(now, 1);
+        String first = tracker.countdownText();
+        assertEquals(RenderPlanner.format(tracker.target() - now), first);
+        tracker.update(now + 200, 1);
+        assertSame(first, tracker.countdownText());
+        tracker.update(now + 1_000, 1);
+        assertEquals("29 min", tracker.countdownText());
+    }
+
+    @Test
+    public void steadyStateTickDoesNotAllocate() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        NextPrayerTracker tracker = new NextPrayerTracker();
+        tracker.setSchedule(schedule(1));
+
+        // Warm up so class loading and JIT compilation do not count
+        long sink = 0;
+        for (int i = 0; i < 200_000; i++) {
+            tracker.update(START + i * 60_000L % (20L * 86_400_000), 1);
+            sink += tracker.prayer();
+        }
+
+        int ticks = 100_000;
+        long before = mx.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ticks; i++) {
+            tracker.update(START + i * 60_000L % (20L * 86_400_000), 1);
+            sink += tracker.prayer() + tracker.target();
+        }
+        long allocated = mx.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sink != 0);
+        // A handful of bytes of measurement noise is tolerated; one object per tick would be >1.6 MB
+        assertTrue("allocated " + allocated + " bytes over " + ticks + " ticks", allocated < 16 * 1024);
+
+        // Ticks within one visible text: the tracker re-checks the text and hands back the same String
+        tracker.update(START, 1);
+        long textStart = tracker.target() - 30 * 60_000 - 900;
+        tracker.update(textStart, 1);
+        String text = tracker.countdownText();
+        for (int i = 0; i < 200_000; i++) {
+            tracker.update(textStart + i % 800, 1);
+            sink += tracker.countdownText().length();
+        }
+        before = mx.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ticks; i++) {
+            tracker.update(textStart + i % 800, 1);
+            sink += tracker.countdownText().length();
+        }
+        allocated = mx.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sink != 0);
+        assertTrue("allocated " + allocated + " bytes over " + ticks + " text ticks", allocated < 16 * 1024);
+        assertSame(text, tracker.countdownText());
+    }
+}
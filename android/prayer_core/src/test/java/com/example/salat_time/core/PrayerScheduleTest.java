@@ -0,0 +1,149 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class PrayerScheduleTest {
+
+    private static final TimeZone STOCKHOLM = TimeZone.getTimeZone("Europe/Stockholm");
+    private static final int[] NO_OFFSETS = new int[PrayerTimesCalculator.PRAYER_COUNT];
+
+    private static long local(int year, int month, int day, int hour, int minute, int second) {
+        Calendar c = Calendar.getInstance(STOCKHOLM);
+        c.clear();
+        c.set(year, month - 1, day, hour, minute, second);
+        return c.getTimeInMillis();
+    }
+
+    private static PrayerSchedule stockholm(long startMs, int days) {
+        return PrayerSchedule.compute(59.3293, 18.0686, 3, NO_OFFSETS, STOCKHOLM, startMs, days, 0);
+    }
+
+    @Test
+    public void nextPrayerHonoursThirtySecondBuffer() {
+        PrayerSchedule s = stockholm(local(2026, 10, 17, 0, 0, 0), 3);
+        long dhuhr = s.epochAt(PrayerTimesCalculator.DHUHR);
+
+        assertEquals(PrayerTimesCalculator.DHUHR, s.indexOfNext(dhuhr - 31_000));
+        // Within 30s of Dhuhr counts as passed
+        assertEquals(PrayerTimesCalculator.ASR, s.indexOfNext(dhuhr - 30_000));
+        assertEquals(PrayerTimesCalculator.ASR, s.indexOfNext(dhuhr));
+    }
+
+    @Test
+    public void ishaPastMidnightStaysAheadOfFajr() {
+        TimeZone oslo = TimeZone.getTimeZone("Europe/Oslo");
+        Calendar c = Calendar.getInstance(oslo);
+        c.clear();
+        c.set(2026, Calendar.JUNE, 22, 0, 5, 0);
+        long afterMidnight = c.getTimeInMillis();
+        // Built just after midnight: the 21st's Isha (about 00:12 on the 22nd) is still ahead
+        PrayerSchedule s = PrayerSchedule.compute(59.9139, 10.7522, 3, NO_OFFSETS, oslo, afterMidnight, 2, 0);
+        assertEquals(3, s.days());
+        int idx = s.indexOfNext(afterMidnight);
+        assertEquals(PrayerTimesCalculator.ISHA, s.prayerAt(idx));
+        assertEquals(PrayerTimesCalculator.FAJR, s.prayerAt(idx + 1));
+        c.setTimeInMillis(s.epochAt(idx));
+        assertEquals(22, c.get(Calendar.DAY_OF_MONTH));
+    }
+
+    @Test
+    public void offsetTiesAreNudgedButInversionsRefused() {
+        long start = local(2026, 10, 17, 0, 0, 0);
+        PrayerSchedule s = stockholm(start, 1);
+        int gap = (int) ((s.epochAt(PrayerTimesCalculator.ISHA) - s.epochAt(PrayerTimesCalculator.MAGHRIB)) / 60_000);
+        int[] tie = {0, 0, 0, gap, 0};
+        PrayerSchedule tied = s.withOffsets(NO_OFFSETS, tie, 1, 0);
+        assertEquals(tied.epochAt(PrayerTimesCalculator.MAGHRIB) + 1, tied.epochAt(PrayerTimesCalculator.ISHA));
+
+        int[] swap = {0, 0, 0, gap + 5, 0};
+        try {
+            s.withOffsets(NO_OFFSETS, swap, 1, 0);
+            fail("Maghrib after Isha was accepted");
+        } catch (IllegalArgumentException expected) {
+            // Refused rather than turned into an Isha that has already passed
+        }
+    }
+
+    @Test
+    public void windowEndsBeforeMidnightSun() {
+        TimeZone zone = TimeZone.getTimeZone("Europe/Stockholm");
+        Calendar c = Calendar.getInstance(zone);
+        c.clear();
+        c.set(2026, Calendar.MAY, 20, 12, 0, 0);
+        // Kiruna has no sunset from 27 May, so no Maghrib or Isha either
+        PrayerSchedule s = PrayerSchedule.compute(67.8558, 20.2253, 99, NO_OFFSETS, zone,
+                c.getTimeInMillis(), PrayerSchedule.DEFAULT_DAYS, 0);
+        assertEquals(7, s.days());
+        c.add(Calendar.DAY_OF_MONTH, 10);
+        assertEquals(0, PrayerSchedule.compute(67.8558, 20.2253, 99, NO_OFFSETS, zone,
+                c.getTimeInMillis(), PrayerSchedule.DEFAULT_DAYS, 0).days());
+    }
+
+    @Test
+    public void afterIshaRollsToTomorrowsOwnFajr() {
+        PrayerSchedule s = stockholm(local(2026, 10, 17, 0, 0, 0), 3);
+        int idx = s.indexOfNext(local(2026, 10, 17, 23, 30, 0));
+        assertEquals(PrayerTimesCalculator.PRAYER_COUNT, idx);
+        assertEquals(PrayerTimesCalculator.FAJR, s.prayerAt(idx));
+        // Tomorrow's Fajr comes from tomorrow's computation, not today's time plus a day
+        assertTrue(s.epochAt(idx) - s.epochAt(PrayerTimesCalculator.FAJR) != 24L * 3600_000L);
+        assertEquals(1, s.daysRemainingAfter(idx));
+    }
+
+    @Test
+    public void exhaustedWindowReturnsMinusOne() {
+        PrayerSchedule s = stockholm(local(2026, 10, 17, 0, 0, 0), 1);
+        assertEquals(-1, s.indexOfNext(local(2026, 10, 17, 23, 59, 0)));
+    }
+
+    @Test
+    public void offsetsShiftEpochsByMinutes() {
+        long start = local(2026, 10, 17, 0, 0, 0);
+        int[] offsets = {0, 0, 10, 0, -5};
+        PrayerSchedule plain = stockholm(start, 1);
+        PrayerSchedule shifted = PrayerSchedule.compute(59.3293, 18.0686, 3, offsets, STOCKHOLM, start, 1, 0);
+        assertEquals(plain.epochAt(PrayerTimesCalculator.ASR) + 600_000L, shifted.epochAt(PrayerTimesCalculator.ASR));
+        assertEquals(plain.epochAt(PrayerTimesCalculator.ISHA) - 300_000L, shifted.epochAt(PrayerTimesCalculator.ISHA));
+    }
+
+    @Test
+    public void apiMinutesRollTwentyFourHundredToNextDay() {
+        int[] minutes = {
+                0, 0, 0, 0, 0, // June 29, before the window
+                3 * 60 + 10, 13 * 60 + 5, 18 * 60 + 40, 22 * 60 + 55, PrayerSchedule.parseMinutes("24:20 (CEST)"),
+                3 * 60 + 12, 13 * 60 + 5, 18 * 60 + 40, 22 * 60 + 54, 24 * 60 + 18,
+        };
+        PrayerSchedule s = PrayerSchedule.fromLocalMinutes(minutes, 1, 2, 2026, 6, 30, NO_OFFSETS, STOCKHOLM, 42L, 0);
+        assertEquals(2, s.days());
+        assertEquals(local(2026, 7, 1, 0, 20, 0), s.epochAt(PrayerTimesCalculator.ISHA));
+        // The second day crosses into July
+        assertEquals(local(2026, 7, 1, 3, 12, 0), s.epochAt(PrayerTimesCalculator.PRAYER_COUNT));
+        assertEquals(local(2026, 7, 2, 0, 18, 0), s.epochAt(2 * PrayerTimesCalculator.PRAYER_COUNT - 1));
+    }
+
+    @Test
+    public void parseMinutesIgnoresSuffix() {
+        assertEquals(5 * 60 + 12, PrayerSchedule.parseMinutes("05:12 (EDT)"));
+        assertEquals(24 * 60 + 3, PrayerSchedule.parseMinutes("24:03"));
+    }
+
+    @Test
+    public void withOffsetsMatchesRecompute() {
+        long start = local(2026, 10, 17, 0, 0, 0);
+        int[] offsets = {5, 0, -3, 2, 10};
+        PrayerSchedule plain = stockholm(start, 3);
+        PrayerSchedule shifted = plain.withOffsets(NO_OFFSETS, offsets, 42L, 9);
+        PrayerSchedule recomputed = PrayerSchedule.compute(59.3293, 18.0686, 3, offsets, STOCKHOLM, start, 3, 9);
+        assertEquals(9, shifted.settingsStamp());
+        assertEquals(42L, shifted.key());
+        for (int i = 0; i < shifted.size(); i++) assertEquals(recomputed.epochAt(i), shifted.epochAt(i));
+        // The original is left alone
+        assertEquals(stockholm(start, 3).epochAt(0), plain.epochAt(0));
+    }
+}
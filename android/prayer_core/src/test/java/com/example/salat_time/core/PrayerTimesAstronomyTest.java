@@ -0,0 +1,316 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.TimeZone;
+import org.junit.Test;
+
+/**
+ * Checks the engine against an independent solar model for every method ID it supports. The
+ * reference is NOAA's solar calculator (Meeus' formulas in Julian centuries), not the
+ * PrayTimes.org series the engine ports, and the method parameters are taken from the API's
+ * published method list. Each time has to be where its method's definition puts the sun,
+ * including the angle-based high-latitude rule, at low and high latitudes in both hemispheres.
+ */
+public class PrayerTimesAstronomyTest {
+
+    // Two solar models that each round to the minute
+    private static final double TOLERANCE_MINUTES = 2;
+    // Closer than this to the high-latitude cut-over, either side of it is accepted
+    private static final double RULE_MARGIN_MINUTES = 3;
+    private static final double RISE_SET = -0.833;
+    // Julian date of 2025-12-31 00:00 UT, so that day-of-year 1 is 2026-01-01
+    private static final double JD_2026_JAN_0 = 2461040.5;
+
+    private static final class Definition {
+        final int id;
+        final double fajrAngle;
+        final double ishaAngle;
+        final double ishaMinutes;
+        final double maghribAngle;
+        final double maghribMinutes;
+
+        Definition(int id, double fajrAngle, double ishaAngle, double ishaMinutes,
+                   double maghribAngle, double maghribMinutes) {
+            this.id = id;
+            this.fajrAngle = fajrAngle;
+            this.ishaAngle = ishaAngle;
+            this.ishaMinutes = ishaMinutes;
+            this.maghribAngle = maghribAngle;
+            this.maghribMinutes = maghribMinutes;
+        }
+    }
+
+    private static final double NA = Double.NaN;
+
+    // api.aladhan.com/v1/methods; 15 adds the Moonsighting Committee's seasonal limits
+    private static final Definition[] DEFINITIONS = {
+            new Definition(0, 16, 14, NA, 4, NA),
+            new Definition(1, 18, 18, NA, NA, NA),
+            new Definition(2, 15, 15, NA, NA, NA),
+            new Definition(3, 18, 17, NA, NA, NA),
+            new Definition(4, 18.5, NA, 90, NA, NA),
+            new Definition(5, 19.5, 17.5, NA, NA, NA),
+            new Definition(7, 17.7, 14, NA, 4.5, NA),
+            new Definition(8, 19.5, NA, 90, NA, NA),
+            new Definition(9, 18, 17.5, NA, NA, NA),
+            new Definition(10, 18, NA, 90, NA, NA),
+            new Definition(11, 20, 18, NA, NA, NA),
+            new Definition(12, 12, 12, NA, NA, NA),
+            new Definition(13, 18, 17, NA, NA, NA),
+            new Definition(14, 16, 15, NA, NA, NA),
+            new Definition(15, 18, 18, NA, NA, NA),
+            new Definition(16, 18.2, 18.2, NA, NA, NA),
+            new Definition(17, 20, 18, NA, NA, NA),
+            new Definition(18, 18, 18, NA, NA, NA),
+            new Definition(19, 18, 17, NA, NA, NA),
+            new Definition(20, 20, 18, NA, NA, NA),
+            new Definition(21, 19, 17, NA, NA, NA),
+            new Definition(22, 18, NA, 77, NA, 3),
+            new Definition(23, 18, 18, NA, NA, 5),
+            new Definition(99, 14.7, 13.7, NA, NA, NA),
+    };
+
+    private static final class Site {
+        final String name;
+        final double lat;
+        final double lon;
+        final TimeZone zone;
+
+        Site(String name, double lat, double lon, String zoneId) {
+            this.name = name;
+            this.lat = lat;
+            this.lon = lon;
+            this.zone = TimeZone.getTimeZone(zoneId);
+        }
+    }
+
+    private static final Site[] SITES = {
+            new Site("Mecca", 21.4225, 39.8262, "Asia/Riyadh"),
+            new Site("Jakarta", -6.2088, 106.8456, "Asia/Jakarta"),
+            new Site("New York", 40.7128, -74.0060, "America/New_York"),
+            new Site("Cape Town", -33.9249, 18.4241, "Africa/Johannesburg"),
+            new Site("Stockholm", 59.3293, 18.0686, "Europe/Stockholm"),
+            new Site("Reykjavik", 64.1466, -21.9426, "Atlantic/Reykjavik"),
+            new Site("Punta Arenas", -53.1638, -70.9171, "America/Punta_Arenas"),
+    };
+
+    // Solstices, equinoxes and two days between them, 2026
+    private static final int[][] DATES = {{3, 20}, {5, 5}, {6, 21}, {9, 23}, {11, 6}, {12, 21}};
+
+    @Test
+    public void everySupportedMethodIsChecked() {
+        List<Integer> checked = new ArrayList<>();
+        for (Definition d : DEFINITIONS) checked.add(d.id);
+        for (int id = 0; id < 100; id++) {
+            assertEquals("method " + id, PrayerTimesCalculator.supportsMethod(id), checked.contains(id));
+        }
+    }
+
+    @Test
+    public void timesPutTheSunWhereTheMethodSays() {
+        int[] out = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        List<String> errors = new ArrayList<>();
+        for (Definition d : DEFINITIONS) {
+            for (Site site : SITES) {
+                for (int[] date : DATES) {
+                    double tz = tzHours(site.zone, 2026, date[0], date[1]);
+                    int doy = dayOfYear(2026, date[0], date[1]);
+                    PrayerTimesCalculator.computeMinutes(2026, date[0], date[1], site.lat, site.lon, tz, d.id, out);
+                    check(d, site, doy, tz, out, errors);
+                }
+            }
+        }
+        assertTrue(errors.size() + " mismatches, e.g. " + errors.subList(0, Math.min(10, errors.size())),
+                errors.isEmpty());
+    }
+
+    private static void check(Definition d, Site s, int doy, double tz, int[] out, List<String> errors) {
+        String where = "method " + d.id + " " + s.name + " day " + doy + " ";
+        double sunrise = event(doy, s.lat, s.lon, tz, RISE_SET, true);
+        double sunset = event(doy, s.lat, s.lon, tz, RISE_SET, false);
+        if (Double.isNaN(sunrise) || Double.isNaN(sunset)) return;
+        double night = 1440 - (sunset - sunrise);
+
+        expect(errors, where + "Dhuhr", out[PrayerTimesCalculator.DHUHR], noon(doy, s.lon, tz));
+        expect(errors, where + "Asr", out[PrayerTimesCalculator.ASR], asr(doy, s.lat, s.lon, tz));
+
+        double[] maghrib;
+        if (!Double.isNaN(d.maghribAngle)) {
+            maghrib = evening(doy, s, tz, d.maghribAngle, sunset, night);
+        } else {
+            double m = Double.isNaN(d.maghribMinutes) ? sunset : sunset + d.maghribMinutes;
+            maghrib = new double[]{m, m};
+        }
+        expectEither(errors, where + "Maghrib", out[PrayerTimesCalculator.MAGHRIB], maghrib);
+
+        double[] fajr = morning(doy, s, tz, d.fajrAngle, sunrise, night);
+        double[] isha = Double.isNaN(d.ishaMinutes)
+                ? evening(doy, s, tz, d.ishaAngle, sunset, night)
+                : new double[]{maghrib[0] + d.ishaMinutes, maghrib[1] + d.ishaMinutes};
+        if (d.id == 15) {
+            // The seasonal limits can only move Fajr later and Isha earlier, never past the sun
+            double engineFajr = out[PrayerTimesCalculator.FAJR];
+            if (engineFajr < Math.min(fajr[0], fajr[1]) - TOLERANCE_MINUTES || engineFajr > sunrise) {
+                errors.add(where + "Fajr " + engineFajr + " outside " + Math.min(fajr[0], fajr[1]) + ".." + sunrise);
+            }
+            double engineIsha = out[PrayerTimesCalculator.ISHA];
+            if (engineIsha > Math.max(isha[0], isha[1]) + TOLERANCE_MINUTES || engineIsha < sunset) {
+                errors.add(where + "Isha " + engineIsha + " outside " + sunset + ".." + Math.max(isha[0], isha[1]));
+            }
+            return;
+        }
+        expectEither(errors, where + "Fajr", out[PrayerTimesCalculator.FAJR], fajr);
+        expectEither(errors, where + "Isha", out[PrayerTimesCalculator.ISHA], isha);
+    }
+
+    @Test
+    public void moonsightingLimitsFollowTheSeasonInBothHemispheres() {
+        int[] out = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        double lat = 45;
+        double l = lat / 55;
+        // Published limits in minutes: Isha after sunset and Fajr before sunrise, at each solstice
+        double winterEvening = 75 + 25.60 * l;
+        double summerEvening = 75 + 6.14 * l;
+        double winterMorning = 75 + 28.65 * l;
+        double summerMorning = 75 + 48.10 * l;
+        double[][] cases = {
+                // latitude, month, day, expected Isha - sunset, expected sunrise - Fajr
+                {lat, 12, 21, winterEvening, winterMorning},
+                {lat, 6, 21, summerEvening, summerMorning},
+                {-lat, 6, 21, winterEvening, winterMorning},
+                {-lat, 12, 21, summerEvening, summerMorning},
+        };
+        for (double[] c : cases) {
+            int month = (int) c[1];
+            int day = (int) c[2];
+            int doy = dayOfYear(2026, month, day);
+            PrayerTimesCalculator.computeMinutes(2026, month, day, c[0], 0, 0, 15, out);
+            double sunset = event(doy, c[0], 0, 0, RISE_SET, false);
+            double sunrise = event(doy, c[0], 0, 0, RISE_SET, true);
+            String where = "lat " + c[0] + " " + month + "/" + day;
+            assertEquals(where + " Isha", c[3], out[PrayerTimesCalculator.ISHA] - sunset, TOLERANCE_MINUTES);
+            assertEquals(where + " Fajr", c[4], sunrise - out[PrayerTimesCalculator.FAJR], TOLERANCE_MINUTES);
+        }
+    }
+
+    // ---- Expected times, as {by the sun, by the high-latitude rule} ----
+
+    private static double[] morning(int doy, Site s, double tz, double angle, double sunrise, double night) {
+        double bySun = event(doy, s.lat, s.lon, tz, -angle, true);
+        double portion = angle / 60 * night;
+        double byRule = sunrise - portion;
+        return pick(bySun, byRule, sunrise - bySun - portion);
+    }
+
+    private static double[] evening(int doy, Site s, double tz, double angle, double sunset, double night) {
+        double bySun = event(doy, s.lat, s.lon, tz, -angle, false);
+        double portion = angle / 60 * night;
+        double byRule = sunset + portion;
+        return pick(bySun, byRule, bySun - sunset - portion);
+    }
+
+    // The rule applies when twilight is longer than its portion of the night or never ends
+    private static double[] pick(double bySun, double byRule, double excess) {
+        if (Double.isNaN(bySun)) return new double[]{byRule, byRule};
+        if (Math.abs(excess) < RULE_MARGIN_MINUTES) return new double[]{bySun, byRule};
+        return excess > 0 ? new double[]{byRule, byRule} : new double[]{bySun, bySun};
+    }
+
+    private static void expect(List<String> errors, String what, int engine, double reference) {
+        expectEither(errors, what, engine, new double[]{reference, reference});
+    }
+
+    private static void expectEither(List<String> errors, String what, int engine, double[] reference) {
+        for (double r : reference) {
+            if (Math.abs(circularDiff(engine, r)) <= TOLERANCE_MINUTES) return;
+        }
+        errors.add(what + ": engine " + PrayerTimesCalculator.formatMinutes(engine)
+                + ", reference " + format(reference[0]) + (reference[1] != reference[0] ? "/" + format(reference[1]) : ""));
+    }
+
+    // Engine minutes are wrapped into a day, except evening times past midnight
+    private static double circularDiff(double a, double b) {
+        double d = (a - b) % 1440;
+        if (d > 720) d -= 1440;
+        if (d < -720) d += 1440;
+        return d;
+    }
+
+    private static String format(double minutes) {
+        return PrayerTimesCalculator.formatMinutes((int) Math.round(((minutes % 1440) + 1440) % 1440));
+    }
+
+    // ---- NOAA solar calculator (Meeus, in Julian centuries) ----
+
+    /** {declination in degrees, equation of time in minutes} at {@code utcMinutes} of day {@code doy}. */
+    private static double[] sun(int doy, double utcMinutes) {
+        double jd = JD_2026_JAN_0 + doy + utcMinutes / 1440;
+        double t = (jd - 2451545) / 36525;
+        double meanLong = (280.46646 + t * (36000.76983 + t * 0.0003032)) % 360;
+        double anomaly = Math.toRadians(357.52911 + t * (35999.05029 - 0.0001537 * t));
+        double ecc = 0.016708634 - t * (0.000042037 + 0.0000001267 * t);
+        double center = Math.sin(anomaly) * (1.914602 - t * (0.004817 + 0.000014 * t))
+                + Math.sin(2 * anomaly) * (0.019993 - 0.000101 * t) + Math.sin(3 * anomaly) * 0.000289;
+        double omega = Math.toRadians(125.04 - 1934.136 * t);
+        double apparentLong = Math.toRadians(meanLong + center - 0.00569 - 0.00478 * Math.sin(omega));
+        double obliquity = Math.toRadians(23 + (26 + (21.448 - t * (46.815 + t * (0.00059 - t * 0.001813))) / 60) / 60
+                + 0.00256 * Math.cos(omega));
+        double decl = Math.asin(Math.sin(obliquity) * Math.sin(apparentLong));
+        double y = Math.tan(obliquity / 2) * Math.tan(obliquity / 2);
+        double l0 = Math.toRadians(meanLong);
+        double eqTime = 4 * Math.toDegrees(y * Math.sin(2 * l0) - 2 * ecc * Math.sin(anomaly)
+                + 4 * ecc * y * Math.sin(anomaly) * Math.cos(2 * l0)
+                - 0.5 * y * y * Math.sin(4 * l0) - 1.25 * ecc * ecc * Math.sin(2 * anomaly));
+        return new double[]{Math.toDegrees(decl), eqTime};
+    }
+
+    private static double noon(int doy, double lon, double tz) {
+        double t = 720 - 4 * lon + tz * 60;
+        for (int i = 0; i < 3; i++) t = 720 - 4 * lon - sun(doy, t - tz * 60)[1] + tz * 60;
+        return t;
+    }
+
+    /** Local minutes at which the sun's centre is at {@code altitude} degrees; NaN if it never is. */
+    private static double event(int doy, double lat, double lon, double tz, double altitude, boolean morning) {
+        double t = noon(doy, lon, tz) + (morning ? -360 : 360);
+        for (int i = 0; i < 6; i++) {
+            double[] sun = sun(doy, t - tz * 60);
+            double decl = Math.toRadians(sun[0]);
+            double phi = Math.toRadians(lat);
+            double cosH = (Math.sin(Math.toRadians(altitude)) - Math.sin(phi) * Math.sin(decl))
+                    / (Math.cos(phi) * Math.cos(decl));
+            if (cosH < -1 || cosH > 1) return Double.NaN;
+            double h = Math.toDegrees(Math.acos(cosH));
+            double solarNoon = 720 - 4 * lon - sun[1] + tz * 60;
+            t = solarNoon + (morning ? -4 * h : 4 * h);
+        }
+        return t;
+    }
+
+    // Shafi Asr: shadow equal to the object plus its noon shadow
+    private static double asr(int doy, double lat, double lon, double tz) {
+        double noon = noon(doy, lon, tz);
+        double decl = sun(doy, noon - tz * 60)[0];
+        double altitude = Math.toDegrees(Math.atan(1 / (1 + Math.tan(Math.toRadians(Math.abs(lat - decl))))));
+        return event(doy, lat, lon, tz, altitude, false);
+    }
+
+    private static double tzHours(TimeZone zone, int year, int month, int day) {
+        Calendar c = Calendar.getInstance(zone);
+        c.clear();
+        c.set(year, month - 1, day, 12, 0, 0);
+        return zone.getOffset(c.getTimeInMillis()) / 3_600_000.0;
+    }
+
+    private static int dayOfYear(int year, int month, int day) {
+        Calendar c = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        c.clear();
+        c.set(year, month - 1, day);
+        return c.get(Calendar.DAY_OF_YEAR);
+    }
+}
@@ -0,0 +1,178 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class PrayerTimesFetcherTest {
+
+    private static final byte[] BODY = "{\"code\":200,\"data\":{\"timings\":{\"Fajr\":\"04:58\"}}}"
+            .getBytes(StandardCharsets.UTF_8);
+    private static final long NOW = 1_792_195_200_000L;
+    private static final long MAX_AGE = 60 * 60_000L;
+
+    private HttpServer server;
+    private File cacheDir;
+    private String url;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String acceptEncoding;
+
+    @Before
+    public void setUp() throws IOException {
+        cacheDir = Files.createTempDirectory("fetcher").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v1/timings", exchange -> {
+            requests.incrementAndGet();
+            acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            if (status != 200) {
+                exchange.sendResponseHeaders(status, -1);
+                exchange.close();
+                return;
+            }
+            ByteArrayOutputStream gz = new ByteArrayOutputStream();
+            try (GZIPOutputStream out = new GZIPOutputStream(gz)) {
+                out.write(BODY);
+            }
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, gz.size());
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(gz.toByteArray());
+            }
+        });
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/timings/16-10-2026";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        File[] files = cacheDir.listFiles();
+        if (files != null) for (File f : files) f.delete();
+        cacheDir.delete();
+    }
+
+    private PrayerTimesFetcher fetcher() {
+        return new PrayerTimesFetcher(cacheDir, MAX_AGE, new Random(42));
+    }
+
+    private static byte[] fetch(PrayerTimesFetcher fetcher, String url, String key, long now) throws IOException {
+        try (InputStream in = fetcher.open(url, key, now)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[256];
+            int n;
+            while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void decodesGzipAndServesFreshCacheWithoutNetwork() throws IOException {
+        PrayerTimesFetcher fetcher = fetcher();
+        assertArrayEquals(BODY, fetch(fetcher, url, "k", NOW));
+        assertEquals("gzip", acceptEncoding);
+        long wireBytes = fetcher.networkBytes();
+        assertTrue(wireBytes > 0);
+        assertArrayEquals(BODY, fetch(fetcher, url, "k", NOW + MAX_AGE - 1));
+        // A new instance (process restart) reads the same disk cache
+        assertArrayEquals(BODY, fetch(fetcher(), url, "k", NOW + 1));
+        assertEquals(1, requests.get());
+        assertEquals(wireBytes, fetcher.networkBytes());
+    }
+
+    @Test
+    public void revalidatesStaleEntryWithEtag() throws IOException {
+        PrayerTimesFetcher fetcher = fetcher();
+        fetch(fetcher, url, "k", NOW);
+        assertArrayEquals(BODY, fetch(fetcher, url, "k", NOW + MAX_AGE));
+        assertEquals(2, requests.get());
+        assertEquals(1, notModified.get());
+        // The 304 refreshed the entry's age
+        fetch(fetcher, url, "k", NOW + MAX_AGE + 1);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void backsOffAfterFailureAndServesStaleBody() throws IOException {
+        PrayerTimesFetcher fetcher = fetcher();
+        fetch(fetcher, url, "k", NOW);
+        // Fail even the conditional request
+        server.removeContext("/v1/timings");
+        server.createContext("/v1/timings", exchange -> {
+            requests.incrementAndGet();
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+        });
+        long stale = NOW + MAX_AGE;
+        assertArrayEquals(BODY, fetch(fetcher, url, "k", stale));
+        assertEquals(1, fetcher.failures());
+        long retryAt = fetcher.nextAttemptAt();
+        assertTrue(retryAt >= stale + PrayerTimesFetcher.BASE_BACKOFF_MS / 2);
+        assertTrue(retryAt <= stale + PrayerTimesFetcher.BASE_BACKOFF_MS);
+
+        int before = requests.get();
+        assertArrayEquals(BODY, fetch(fetcher, url, "k", retryAt - 1));
+        assertEquals(before, requests.get());
+    }
+
+    @Test
+    public void breakerOpensAfterRepeatedFailuresAndClosesOnSuccess() throws IOException {
+        status = 500;
+        PrayerTimesFetcher fetcher = fetcher();
+        long now = NOW;
+        for (int i = 0; i < PrayerTimesFetcher.BREAKER_THRESHOLD; i++) {
+            try {
+                fetch(fetcher, url, "k", now);
+                fail("expected failure");
+            } catch (IOException expected) {
+            }
+            now = fetcher.nextAttemptAt();
+        }
+        assertEquals(PrayerTimesFetcher.BREAKER_THRESHOLD, requests.get());
+        long opened = now - PrayerTimesFetcher.BREAKER_OPEN_MS;
+        assertTrue(fetcher.isBreakerOpen(opened + 1));
+
+        // Every tick while open is answered locally
+        for (long t = opened + 1; t < now; t += 60_000) {
+            try {
+                fetch(fetcher, url, "k", t);
+                fail("expected back-off");
+            } catch (PrayerTimesFetcher.BackoffException expected) {
+            }
+        }
+        assertEquals(PrayerTimesFetcher.BREAKER_THRESHOLD, requests.get());
+        // State is persisted, so a restarted process stays quiet too
+        assertTrue(fetcher().isBreakerOpen(opened + 1));
+
+        status = 200;
+        assertArrayEquals(BODY, fetch(fetcher, url, "k", now));
+        assertEquals(0, fetcher.failures());
+        assertFalse(fetcher.isBreakerOpen(now));
+    }
+}
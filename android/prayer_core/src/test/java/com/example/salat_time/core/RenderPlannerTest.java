@@ -0,0 +1,102 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+public class RenderPlannerTest {
+
+    private static final long START = 1_792_195_200_000L; // 2026-10-17T00:00:00Z
+
+    @Test
+    public void resolutionFollowsTimeLeft() {
+        assertEquals("0 s", RenderPlanner.format(-5_000));
+        assertEquals("59 s", RenderPlanner.format(59_999));
+        assertEquals("1 min", RenderPlanner.format(60_000));
+        assertEquals("59 min", RenderPlanner.format(3_599_999));
+        assertEquals("1 h 0 min", RenderPlanner.format(3_600_000));
+        assertEquals("1 h 59 min", RenderPlanner.format(7_199_999));
+        assertEquals("12 h 0 min", RenderPlanner.format(12 * 3_600_000L + 1));
+        assertEquals("99 h 59 min", RenderPlanner.format(500 * 3_600_000L));
+    }
+
+    @Test
+    public void hoursRollOverIntoMinutes() {
+        long target = START + 4 * 3_600_000L;
+        RenderPlanner planner = new RenderPlanner();
+        // 3 h 59 min 30 s left reads "3 h 59 min", not "3 h", and drops a minute 30 s later
+        long now = target - (3 * 60 + 59) * 60_000L - 30_000;
+        assertEquals("3 h 59 min", RenderPlanner.format(target - now));
+        long next = planner.nextChange(target, now);
+        assertEquals(target - (3 * 60 + 59) * 60_000L + 1, next);
+        assertEquals("3 h 58 min", RenderPlanner.format(target - next));
+
+        // The last whole hour gives way to "59 min" one millisecond after it ends
+        now = target - 3_600_000L - 30_000;
+        assertEquals("1 h 0 min", RenderPlanner.format(target - now));
+        next = planner.nextChange(target, now);
+        assertEquals(target - 3_600_000L + 1, next);
+        assertEquals("59 min", RenderPlanner.format(target - next));
+    }
+
+    @Test
+    public void timelineHasExactlyTheInstantsTheTextChanges() {
+        long target = START + 2 * 3_600_000L + 17_321;
+        long from = START + 123;
+        RenderPlanner planner = new RenderPlanner();
+        planner.nextChange(target, from);
+        long[] planned = new long[planner.planned()];
+        long t = from;
+        for (int i = 0; i < planned.length; i++) {
+            planned[i] = planner.nextChange(target, t);
+            t = planned[i];
+        }
+        assertEquals(target - PrayerSchedule.NEXT_BUFFER_MS, planner.nextChange(target, t));
+
+        // Every millisecond up to the prayer switch
+        char[] buf = new char[RenderPlanner.MAX_LENGTH];
+        String shown = RenderPlanner.format(target - from);
+        int changes = 0;
+        for (long now = from + 1; now < target - PrayerSchedule.NEXT_BUFFER_MS; now++) {
+            String text = new String(buf, 0, RenderPlanner.format(target - now, buf));
+            if (!text.equals(shown)) {
+                assertEquals("change " + changes + " (" + text + ")", planned[changes], now);
+                changes++;
+                shown = text;
+            }
+        }
+        assertEquals(planned.length, changes);
+        // A change a minute from "2 h 0 min" down to "1 min", then the seconds to the switch
+        assertEquals(119 + 30, changes);
+    }
+
+    @Test
+    public void clockSetBackPlansAgain() {
+        long target = START + 3_600_000L;
+        RenderPlanner planner = new RenderPlanner();
+        long late = planner.nextChange(target, target - 10_000);
+        long early = planner.nextChange(target, START);
+        assertNotEquals(late, early);
+        assertEquals(START + 1, early);
+    }
+
+    @Test
+    public void walkingThePlanDoesNotAllocate() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        RenderPlanner planner = new RenderPlanner();
+        long target = START + 20 * 3_600_000L;
+
+        long sink = 0;
+        for (long now = START; now < target - 60_000; now += 1_000) sink += planner.nextChange(target, now);
+
+        long before = mx.getThreadAllocatedBytes(threadId);
+        for (long now = START + 1; now < target - 60_000; now += 1_000) sink += planner.nextChange(target, now);
+        long allocated = mx.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sink != 0);
+        assertTrue("allocated " + allocated + " bytes", allocated < 16 * 1024);
+    }
+}
@@ -0,0 +1,68 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class ScheduleCacheTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Europe/Stockholm");
+    private static final long START = 1_792_195_200_000L; // 2026-10-17T00:00:00Z
+    private static final int[] NO_OFFSETS = new int[PrayerTimesCalculator.PRAYER_COUNT];
+
+    private static PrayerSchedule schedule(long key) {
+        return new PrayerSchedule(key, 0, new long[]{1, 2, 3, 4, 5});
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        ScheduleCache cache = new ScheduleCache(2);
+        PrayerSchedule a = schedule(1);
+        cache.put(1, a);
+        cache.put(2, schedule(2));
+        // Touch 1 so 2 is the eldest when 3 arrives
+        assertSame(a, cache.get(1));
+        cache.put(3, schedule(3));
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2));
+        assertSame(a, cache.get(1));
+        assertEquals(2, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void pointsInOneCellShareAKey() {
+        int date = ScheduleCache.localDate(START, ZONE);
+        long home = ScheduleCache.cellKey(59.3293, 18.0686, 3, ZONE.getID(), date);
+        assertEquals(home, ScheduleCache.cellKey(59.3101, 18.0712, 3, ZONE.getID(), date));
+        assertNotEquals(home, ScheduleCache.cellKey(59.3593, 18.0686, 3, ZONE.getID(), date));
+        assertNotEquals(home, ScheduleCache.cellKey(59.3293, 18.0686, 2, ZONE.getID(), date));
+        assertNotEquals(home, ScheduleCache.cellKey(59.3293, 18.0686, 3, ZONE.getID(), date + 1));
+        assertEquals(20261017, date);
+    }
+
+    @Test
+    public void cellCenterIsInsideTheCell() {
+        assertEquals(59.325, ScheduleCache.cellCenter(59.3293), 1e-9);
+        assertEquals(-33.875, ScheduleCache.cellCenter(-33.8688), 1e-9);
+        assertEquals(0.025, ScheduleCache.cellCenter(0.0), 1e-9);
+    }
+
+    @Test
+    public void sharedScheduleWithOffsetsMatchesOwnComputation() {
+        double lat = ScheduleCache.cellCenter(59.3293);
+        double lon = ScheduleCache.cellCenter(18.0686);
+        PrayerSchedule shared = PrayerSchedule.compute(lat, lon, 3, NO_OFFSETS, ZONE, START, 7, 0);
+        int[] offsets = {2, 0, -1, 0, 5};
+        PrayerSchedule own = PrayerSchedule.compute(lat, lon, 3, offsets, ZONE, START, 7, 4);
+
+        PrayerSchedule derived = shared.withOffsets(NO_OFFSETS, offsets, own.key(), 4);
+        assertArrayEquals(own.epochs(), derived.epochs());
+    }
+}
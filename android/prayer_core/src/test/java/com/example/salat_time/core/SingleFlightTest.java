@@ -0,0 +1,83 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallersShareOneExecution() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SingleFlight<String, Integer> flights = new SingleFlight<>(executor);
+            CountDownLatch release = new CountDownLatch(1);
+            CountDownLatch done = new CountDownLatch(3);
+            AtomicInteger runs = new AtomicInteger();
+            List<Integer> results = new ArrayList<>();
+            SingleFlight.Callback<Integer> cb = (value, error) -> {
+                synchronized (results) {
+                    results.add(value);
+                }
+                done.countDown();
+            };
+
+            assertTrue(flights.execute("k", () -> {
+                release.await();
+                return runs.incrementAndGet();
+            }, cb));
+            assertFalse(flights.execute("k", runs::incrementAndGet, cb));
+            assertFalse(flights.execute("k", runs::incrementAndGet, cb));
+            assertEquals(1, flights.inFlightCount());
+
+            release.countDown();
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertEquals(1, runs.get());
+            assertEquals(3, results.size());
+            for (Integer r : results) assertEquals(Integer.valueOf(1), r);
+            assertEquals(0, flights.inFlightCount());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void keyCanRunAgainAfterCompletion() throws Exception {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            SingleFlight<String, Integer> flights = new SingleFlight<>(executor);
+            AtomicInteger runs = new AtomicInteger();
+            CountDownLatch first = new CountDownLatch(1);
+            flights.execute("k", runs::incrementAndGet, (v, e) -> first.countDown());
+            assertTrue(first.await(5, TimeUnit.SECONDS));
+            CountDownLatch second = new CountDownLatch(1);
+            assertTrue(flights.execute("k", runs::incrementAndGet, (v, e) -> second.countDown()));
+            assertTrue(second.await(5, TimeUnit.SECONDS));
+            assertEquals(2, runs.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void rejectionIsReportedToCaller() {
+        SingleFlight<String, Integer> flights = new SingleFlight<>(r -> {
+            throw new RejectedExecutionException("full");
+        });
+        Throwable[] seen = new Throwable[1];
+        flights.execute("k", () -> 1, (v, e) -> seen[0] = e);
+        assertNotNull(seen[0]);
+        assertEquals(0, flights.inFlightCount());
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.management.ManagementFactory;
+import org.junit.Test;
+
+public class TelemetryTest {
+
+    @Test
+    public void bucketsArePowersOfTwo() {
+        assertEquals(0, Telemetry.bucketOf(0));
+        assertEquals(0, Telemetry.bucketOf(-3));
+        assertEquals(1, Telemetry.bucketOf(1));
+        assertEquals(2, Telemetry.bucketOf(2));
+        assertEquals(2, Telemetry.bucketOf(3));
+        assertEquals(11, Telemetry.bucketOf(1024));
+        assertEquals(Telemetry.BUCKETS - 1, Telemetry.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void quantileReportsBucketUpperBound() {
+        Telemetry t = new Telemetry(0);
+        assertEquals(-1, t.quantileUpperBound(Telemetry.TICK_MICROS, 0.5));
+        for (int i = 0; i < 99; i++) t.record(Telemetry.TICK_MICROS, 100);
+        t.record(Telemetry.TICK_MICROS, 5000);
+        assertEquals(100, t.samples(Telemetry.TICK_MICROS));
+        assertEquals(128, t.quantileUpperBound(Telemetry.TICK_MICROS, 0.5));
+        assertEquals(128, t.quantileUpperBound(Telemetry.TICK_MICROS, 0.99));
+        assertEquals(8192, t.quantileUpperBound(Telemetry.TICK_MICROS, 1.0));
+    }
+
+    @Test
+    public void jsonRoundTrip() throws Exception {
+        Telemetry t = new Telemetry(1_792_195_200_000L);
+        t.increment(Telemetry.TICKS);
+        t.add(Telemetry.BYTES_FETCHED, 12_345);
+        t.record(Telemetry.REFRESH_MILLIS, 250);
+        t.recordWakeup(20261016);
+        t.recordWakeup(20261017);
+        t.recordWakeup(20261017);
+
+        Telemetry back = Telemetry.fromJson(t.toJson());
+        assertEquals(t.toJson(), back.toJson());
+        assertEquals(12_345, back.count(Telemetry.BYTES_FETCHED));
+        assertEquals(3, back.count(Telemetry.WAKEUPS));
+        assertEquals(1, back.wakeupsPreviousDay());
+        assertEquals(3, back.recordWakeup(20261017));
+        assertEquals(1_792_195_200_000L, back.sinceMs());
+    }
+
+    @Test
+    public void unknownFieldsAreSkipped() throws Exception {
+        Telemetry t = Telemetry.fromJson("{\"version\":2,\"extra\":{\"x\":[1,2]},"
+                + "\"counters\":{\"ticks\":7,\"future_counter\":3}}");
+        assertEquals(7, t.count(Telemetry.TICKS));
+    }
+
+    @Test
+    public void concurrentRecordingLosesNothing() throws Exception {
+        Telemetry t = new Telemetry(0);
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int n = 0; n < 50_000; n++) {
+                    t.increment(Telemetry.TICKS);
+                    t.record(Telemetry.TICK_MICROS, n);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread th : threads) th.join();
+        assertEquals(200_000, t.count(Telemetry.TICKS));
+        assertEquals(200_000, t.samples(Telemetry.TICK_MICROS));
+    }
+
+    @Test
+    public void recordingDoesNotAllocate() {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Telemetry t = new Telemetry(0);
+        for (int i = 0; i < 200_000; i++) {
+            t.increment(Telemetry.TICKS);
+            t.record(Telemetry.TICK_MICROS, i);
+        }
+        long before = mx.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 100_000; i++) {
+            t.increment(Telemetry.TICKS);
+            t.record(Telemetry.TICK_MICROS, i);
+        }
+        long allocated = mx.getThreadAllocatedBytes(threadId) - before;
+        assertTrue("allocated " + allocated, allocated < 16 * 1024);
+    }
+}
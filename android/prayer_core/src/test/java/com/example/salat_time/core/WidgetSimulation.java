@@ -0,0 +1,316 @@
+package com.example.salat_time.core;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Replays a year of widget ticks for a set of cities on a {@link SimulatedClock}, in seconds.
+ *
+ * Each broadcast runs the provider's own {@link WidgetTick}: the tracker update, a schedule
+ * rebuild when {@link WidgetTick#needsRefresh()} asks for one, and
+ * {@link WidgetTick#planAlarm} for the next alarm.
+ * Broadcasts are the widget's own alarms, DATE_CHANGED at every local midnight and
+ * TIMEZONE_CHANGED where a scenario changes the device zone. Between broadcasts the
+ * displayed prayer is checked against an independent computation every
+ * {@link #CHECK_STEP_MS} and right before the next broadcast, and before API 24 so is the
+ * countdown text.
+ *
+ * Reports per city: correctness (instants checked, wrong ones, days skipped because the
+ * method has no time for some prayer), schedule computations, bytes allocated by the tick
+ * work, widget updates actually sent (the renderer skips unchanged state) and wake-ups per
+ * day. Run with {@code ./gradlew :prayer_core:simulate}.
+ */
+public final class WidgetSimulation {
+
+    // Coprime with minutes and hours, so checks land at every phase of the day over a year
+    static final long CHECK_STEP_MS = 7 * 60_000L + 13_000L;
+
+    private static final long DAY_MS = 86_400_000L;
+    private static final int MAX_REPORTED_ERRORS = 5;
+
+    /** A place and method, optionally with the device zone switched to {@code laterZone} at {@code zoneChangeMs}. */
+    static final class City {
+        final String name;
+        final double lat;
+        final double lon;
+        final int method;
+        final TimeZone zone;
+        final TimeZone laterZone;
+        final long zoneChangeMs;
+
+        City(String name, double lat, double lon, int method, String zone) {
+            this(name, lat, lon, method, zone, null, Long.MAX_VALUE);
+        }
+
+        City(String name, double lat, double lon, int method, String zone, String laterZone, long zoneChangeMs) {
+            this.name = name;
+            this.lat = lat;
+            this.lon = lon;
+            this.method = method;
+            this.zone = TimeZone.getTimeZone(zone);
+            this.laterZone = laterZone != null ? TimeZone.getTimeZone(laterZone) : null;
+            this.zoneChangeMs = zoneChangeMs;
+        }
+    }
+
+    static final class Report {
+        final String city;
+        final int days;
+        long broadcasts;
+        long renders;
+        long wakeups;
+        long maxWakeupsPerDay;
+        long computations;
+        long computedDays;
+        long allocatedBytes;
+        long checks;
+        long wrong;
+        long skippedDays;
+        final List<String> errors = new ArrayList<>();
+
+        Report(String city, int days) {
+            this.city = city;
+            this.days = days;
+        }
+
+        double perDay(long value) {
+            return (double) value / days;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US, "%-22s %8d %6d %10.2f %6d %6d %8.2f %10.0f %9d %9.1f %6d %7d",
+                    city, checks, wrong, perDay(wakeups), maxWakeupsPerDay, computations,
+                    perDay(computedDays), perDay(allocatedBytes), broadcasts, perDay(renders), skippedDays, days);
+        }
+
+        static String header() {
+            return String.format(Locale.US, "%-22s %8s %6s %10s %6s %6s %8s %10s %9s %9s %6s %7s",
+                    "city", "checks", "wrong", "wakeups/d", "max/d", "builds", "days/d", "bytes/d",
+                    "broadcast", "updates/d", "skip", "days");
+        }
+    }
+
+    /** A clock that only moves when told to. */
+    static final class SimulatedClock implements WidgetClock {
+        private final long bootMs;
+        private long nowMs;
+        private TimeZone zone;
+
+        SimulatedClock(long startMs, TimeZone zone) {
+            this.bootMs = startMs;
+            this.nowMs = startMs;
+            this.zone = zone;
+        }
+
+        void advanceTo(long ms) {
+            if (ms < nowMs) throw new IllegalArgumentException("Time only moves forward: " + ms + " < " + nowMs);
+            nowMs = ms;
+        }
+
+        void setZone(TimeZone zone) {
+            this.zone = zone;
+        }
+
+        @Override
+        public long currentTimeMillis() {
+            return nowMs;
+        }
+
+        @Override
+        public long elapsedRealtime() {
+            return nowMs - bootMs;
+        }
+
+        @Override
+        public TimeZone zone() {
+            return zone;
+        }
+    }
+
+    private WidgetSimulation() {}
+
+    static List<City> cities(long startMs) {
+        List<City> cities = new ArrayList<>();
+        cities.add(new City("Mecca", 21.4225, 39.8262, 4, "Asia/Riyadh"));
+        cities.add(new City("Jakarta", -6.2088, 106.8456, 20, "Asia/Jakarta"));
+        cities.add(new City("New York (DST)", 40.7128, -74.0060, 2, "America/New_York"));
+        cities.add(new City("Sydney (DST)", -33.8688, 151.2093, 3, "Australia/Sydney"));
+        cities.add(new City("Stockholm (59N)", 59.3293, 18.0686, 99, "Europe/Stockholm"));
+        // Isha after midnight for weeks around the June solstice
+        cities.add(new City("Oslo (MWL, 60N)", 59.9139, 10.7522, 3, "Europe/Oslo"));
+        cities.add(new City("Lulea (66N)", 65.5848, 22.1547, 99, "Europe/Stockholm"));
+        // Same place, device zone changed by hand half-way through: epochs must not move
+        cities.add(new City("London, zone -> Dubai", 51.5074, -0.1278, 3, "Europe/London",
+                "Asia/Dubai", startMs + 182 * DAY_MS + 3 * 3_600_000L + 17 * 60_000L));
+        return cities;
+    }
+
+    /**
+     * Replays {@code days} days from {@code startMs}.
+     *
+     * @param systemCountdown true for API 24+ (Chronometer), false for the planned text countdown
+     */
+    static Report run(City city, long startMs, int days, boolean systemCountdown) {
+        com.sun.management.ThreadMXBean mx = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        Report report = new Report(city.name + (systemCountdown ? "" : " <24"), days);
+        SimulatedClock clock = new SimulatedClock(startMs, city.zone);
+        WidgetTick tick = new WidgetTick();
+        NextPrayerTracker tracker = tick.tracker();
+        PrayerSchedule[] shown = new PrayerSchedule[1];
+        char[] expectedText = new char[RenderPlanner.MAX_LENGTH];
+        int lastPrayer = -1;
+        long lastTarget = -1;
+        String lastText = null;
+        int[] offsets = new int[PrayerTimesCalculator.PRAYER_COUNT];
+        int generation = 1;
+        long endMs = startMs + days * DAY_MS;
+        long zoneChangeMs = city.laterZone != null ? city.zoneChangeMs : Long.MAX_VALUE;
+
+        int wakeupDay = 0;
+        long wakeupsToday = 0;
+        int skippedDay = 0;
+
+        // Boot: the first broadcast comes at the start, not from an alarm
+        long nowMs = startMs;
+        boolean wakeup = false;
+        while (nowMs < endMs) {
+            clock.advanceTo(nowMs);
+            if (nowMs == zoneChangeMs) {
+                clock.setZone(city.laterZone);
+                tracker.invalidate();
+                zoneChangeMs = Long.MAX_VALUE;
+            }
+            TimeZone zone = clock.zone();
+            report.broadcasts++;
+            if (wakeup) {
+                report.wakeups++;
+                int day = ScheduleCache.localDate(nowMs, zone);
+                if (day != wakeupDay) {
+                    wakeupDay = day;
+                    wakeupsToday = 0;
+                }
+                report.maxWakeupsPerDay = Math.max(report.maxWakeupsPerDay, ++wakeupsToday);
+            }
+
+            // The tick itself, measured for allocation
+            long before = mx.getThreadAllocatedBytes(threadId);
+            boolean ok = tick.update(clock.currentTimeMillis(), generation);
+            if (tick.needsRefresh()) {
+                PrayerSchedule schedule = PrayerSchedule.compute(city.lat, city.lon, city.method, offsets, zone,
+                        clock.currentTimeMillis(), PrayerSchedule.DEFAULT_DAYS, generation);
+                report.computations++;
+                report.computedDays += schedule.days();
+                tracker.setSchedule(schedule);
+                ok = tick.update(clock.currentTimeMillis(), generation);
+            }
+            int shownPrayer = ok ? tracker.prayer() : -1;
+            long shownTarget = ok ? tracker.target() : -1;
+            shown[0] = tracker.schedule();
+            long alarm = tick.planAlarm(shown, clock.currentTimeMillis(), zone, systemCountdown);
+            boolean alarmWakes = tick.alarmWakes();
+            String shownText = systemCountdown || !ok ? "" : tracker.countdownText();
+            report.allocatedBytes += mx.getThreadAllocatedBytes(threadId) - before;
+            // As WidgetRenderer: nothing is sent when prayer, target and text are unchanged
+            if (shownPrayer != lastPrayer || shownTarget != lastTarget || !shownText.equals(lastText)) {
+                report.renders++;
+                lastPrayer = shownPrayer;
+                lastTarget = shownTarget;
+                lastText = shownText;
+            }
+
+            // Next broadcast: our alarm, DATE_CHANGED at local midnight, or the zone change
+            long midnight = AlarmBoundary.nextLocalMidnight(nowMs, zone);
+            long next = Math.min(Math.min(alarm, midnight), zoneChangeMs);
+            wakeup = next == alarm && alarmWakes;
+            if (next <= nowMs) {
+                report.errors.add(city.name + ": alarm not in the future at " + nowMs);
+                next = nowMs + 60_000L;
+            }
+
+            // What is on screen until then must be the prayer the oracle expects
+            long[] expected = new long[2];
+            for (long s = nowMs; s < next; s = nextCheck(s, next)) {
+                if (!expectedNext(city, s, zone, expected)) {
+                    int day = ScheduleCache.localDate(s, zone);
+                    if (day != skippedDay) {
+                        skippedDay = day;
+                        report.skippedDays++;
+                    }
+                    continue;
+                }
+                report.checks++;
+                boolean textWrong = !systemCountdown
+                        && !shownText.equals(new String(expectedText, 0, RenderPlanner.format(expected[1] - s, expectedText)));
+                if (expected[0] != shownPrayer || expected[1] != shownTarget || textWrong) {
+                    report.wrong++;
+                    if (report.errors.size() < MAX_REPORTED_ERRORS) {
+                        report.errors.add(String.format(Locale.US, "%s at %d: shows %d@%d \"%s\", expected %d@%d",
+                                city.name, s, shownPrayer, shownTarget, shownText, expected[0], expected[1]));
+                    }
+                }
+            }
+            nowMs = next;
+        }
+        return report;
+    }
+
+    // Every CHECK_STEP_MS, and always the last millisecond before the next broadcast
+    private static long nextCheck(long s, long next) {
+        long step = s + CHECK_STEP_MS;
+        return step < next - 1 ? step : s < next - 1 ? next - 1 : next;
+    }
+
+    /**
+     * Independent of {@link PrayerSchedule}: the earliest engine time more than 30s after
+     * {@code nowMs}, from the local dates before, of and after {@code nowMs}. It takes the
+     * earliest rather than the next in order, so a time on the wrong day (an Isha past
+     * midnight filed before Fajr) shows up as a wrong answer, not a skipped one. Returns
+     * false only when one of those days has no time for some prayer.
+     */
+    static boolean expectedNext(City city, long nowMs, TimeZone zone, long[] out) {
+        int count = PrayerTimesCalculator.PRAYER_COUNT;
+        Calendar c = Calendar.getInstance(zone);
+        c.setTimeInMillis(nowMs);
+        c.add(Calendar.DAY_OF_MONTH, -1);
+        long[] epochs = new long[3 * count];
+        for (int d = 0; d < 3; d++) {
+            PrayerTimesCalculator.computeEpochs(c.get(Calendar.YEAR), c.get(Calendar.MONTH) + 1,
+                    c.get(Calendar.DAY_OF_MONTH), city.lat, city.lon, zone, city.method, epochs, d * count);
+            c.add(Calendar.DAY_OF_MONTH, 1);
+        }
+        long threshold = nowMs + PrayerSchedule.NEXT_BUFFER_MS;
+        long best = Long.MAX_VALUE;
+        for (int i = 0; i < epochs.length; i++) {
+            if (epochs[i] < 0) return false;
+            if (epochs[i] > threshold && epochs[i] < best) {
+                best = epochs[i];
+                out[0] = i % count;
+                out[1] = epochs[i];
+            }
+        }
+        return best != Long.MAX_VALUE;
+    }
+
+    public static void main(String[] args) {
+        // A year from 2026-01-01 local midnight UTC; covers both DST switches everywhere
+        long startMs = 1_767_225_600_000L;
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 365;
+        long wallStart = System.nanoTime();
+        System.out.println(Report.header());
+        List<Report> reports = new ArrayList<>();
+        for (City city : cities(startMs)) reports.add(run(city, startMs, days, true));
+        reports.add(run(cities(startMs).get(0), startMs, days, false));
+        for (Report r : reports) System.out.println(r);
+        for (Report r : reports) {
+            for (String e : r.errors) System.out.println("  " + e);
+        }
+        System.out.printf(Locale.US, "%d city-years in %.1f s%n", reports.size(),
+                (System.nanoTime() - wallStart) / 1e9);
+    }
+}
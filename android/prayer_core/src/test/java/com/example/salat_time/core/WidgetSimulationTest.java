@@ -0,0 +1,43 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WidgetSimulationTest {
+
+    private static final long START = 1_767_225_600_000L; // 2026-01-01T00:00:00Z
+
+    @Test
+    public void everyCityShowsTheRightPrayerAllYear() {
+        for (WidgetSimulation.City city : WidgetSimulation.cities(START)) {
+            WidgetSimulation.Report r = WidgetSimulation.run(city, START, 365, true);
+            assertTrue(r.errors.toString(), r.errors.isEmpty());
+            assertEquals(city.name, 0, r.wrong);
+            // The whole year is checked, Isha past midnight included
+            assertEquals(city.name, 0, r.skippedDays);
+            assertTrue(city.name + ": " + r.checks, r.checks > 70_000);
+            // Five prayers and midnight; a sixth switch on the day Isha moves past midnight,
+            // which then holds both the previous day's Isha and its own
+            assertTrue(city.name + ": " + r.maxWakeupsPerDay, r.maxWakeupsPerDay <= 7);
+            // One build per window, plus one for the zone change
+            assertTrue(city.name + ": " + r.computations, r.computations <= 15);
+        }
+    }
+
+    @Test
+    public void textCountdownBeforeApi24IsRightAndDoesNotWake() {
+        WidgetSimulation.City mecca = WidgetSimulation.cities(START).get(0);
+        WidgetSimulation.Report chronometer = WidgetSimulation.run(mecca, START, 30, true);
+        WidgetSimulation.Report text = WidgetSimulation.run(mecca, START, 30, false);
+
+        // Text included: every sampled instant shows exactly the text for the time left
+        assertTrue(text.errors.toString(), text.errors.isEmpty());
+        assertEquals(0, text.wrong);
+        assertEquals(chronometer.wakeups, text.wakeups);
+        assertEquals(chronometer.computations, text.computations);
+        // One a minute plus the last 30 seconds of each prayer; never an update without a change
+        assertTrue("updates/day " + text.perDay(text.renders), text.perDay(text.renders) < 1440 + 5 * 30 + 10);
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class WidgetSnapshotTest {
+
+    private static final TimeZone STOCKHOLM = TimeZone.getTimeZone("Europe/Stockholm");
+    private static final long START = 1_792_188_000_000L; // 2026-10-17T00:00+02:00
+    private static final int[] OFFSETS = {2, 0, -1, 3, 0};
+
+    private static WidgetSnapshot snapshot(int generation, PrayerSchedule schedule) {
+        return new WidgetSnapshot(generation, 59.3293, 18.0686, 3, OFFSETS,
+                PrayerTimesCalculator.ASR, START + 14 * 3600_000L, START, schedule);
+    }
+
+    @Test
+    public void roundTripsThroughFile() throws Exception {
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START,
+                PrayerSchedule.DEFAULT_DAYS, 7);
+        File file = File.createTempFile("snapshot", ".bin");
+        try {
+            WidgetSnapshot.write(file, snapshot(7, s));
+            assertFalse(new File(file.getPath() + ".tmp").exists());
+            WidgetSnapshot read = WidgetSnapshot.read(file);
+            assertNotNull(read);
+            assertEquals(7, read.generation());
+            assertEquals(59.3293, read.lat(), 0);
+            assertEquals(18.0686, read.lon(), 0);
+            assertEquals(3, read.method());
+            assertArrayEquals(OFFSETS, read.offsets());
+            assertEquals(PrayerTimesCalculator.ASR, read.shownPrayer());
+            assertEquals(START + 14 * 3600_000L, read.shownTarget());
+            assertNotNull(read.schedule());
+            assertEquals(s.key(), read.schedule().key());
+            assertArrayEquals(s.epochs(), read.schedule().epochs());
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void sameHeaderSeesSameSizeRewrite() throws Exception {
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START, 2, 7);
+        WidgetSnapshot first = snapshot(7, s);
+        File file = File.createTempFile("snapshot", ".bin");
+        try {
+            WidgetSnapshot.write(file, first);
+            assertTrue(WidgetSnapshot.sameHeader(file, first));
+            long length = file.length();
+            WidgetSnapshot.write(file, first.restamp(8));
+            assertEquals(length, file.length());
+            assertFalse(WidgetSnapshot.sameHeader(file, first));
+            WidgetSnapshot.write(file, new WidgetSnapshot(7, 59.3293, 18.0686, 3, OFFSETS,
+                    PrayerTimesCalculator.ASR, START + 14 * 3600_000L, START + 1, s));
+            assertFalse(WidgetSnapshot.sameHeader(file, first));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void scheduleForOlderGenerationIsNotOffered() {
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START, 2, 6);
+        WidgetSnapshot read = WidgetSnapshot.fromBytes(snapshot(7, s).toBytes(), WidgetSnapshot.HEADER_BYTES + 80);
+        assertNotNull(read);
+        assertNull(read.schedule());
+    }
+
+    @Test
+    public void withScheduleRecordsShownPrayer() {
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START, 2, 7);
+        long beforeDhuhr = s.epochAt(PrayerTimesCalculator.DHUHR) - 60_000;
+        WidgetSnapshot next = snapshot(7, null).withSchedule(s, beforeDhuhr);
+        assertEquals(PrayerTimesCalculator.DHUHR, next.shownPrayer());
+        assertEquals(s.epochAt(PrayerTimesCalculator.DHUHR), next.shownTarget());
+        assertEquals(beforeDhuhr, next.updatedAt());
+        assertEquals(7, next.generation());
+        assertNull(next.withoutSchedule(beforeDhuhr).schedule());
+    }
+
+    @Test
+    public void headerHoldsTheShownPrayerWithoutTheSchedule() throws Exception {
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START,
+                PrayerSchedule.DEFAULT_DAYS, 7);
+        WidgetSnapshot shown = snapshot(7, s).withShown(PrayerTimesCalculator.MAGHRIB, START + 17 * 3600_000L);
+        assertEquals(START, shown.updatedAt());
+        assertNotNull(shown.schedule());
+        File file = File.createTempFile("snapshot", ".bin");
+        try {
+            WidgetSnapshot.write(file, shown);
+            WidgetSnapshot header = WidgetSnapshot.readHeader(file);
+            assertNotNull(header);
+            assertEquals(7, header.generation());
+            assertEquals(PrayerTimesCalculator.MAGHRIB, header.shownPrayer());
+            assertEquals(START + 17 * 3600_000L, header.shownTarget());
+            assertNull(header.schedule());
+            assertTrue(file.delete());
+            assertNull(WidgetSnapshot.readHeader(file));
+        } finally {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void withSettingsBumpsGenerationOnlyOnChange() {
+        WidgetSnapshot base = snapshot(7, null);
+        assertTrue(base == base.withSettings(59.3293, 18.0686, 3, OFFSETS.clone(), null, START));
+
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 4, OFFSETS, STOCKHOLM, START, 2, 8);
+        WidgetSnapshot moved = base.withSettings(59.3293, 18.0686, 4, OFFSETS, s, START);
+        assertEquals(8, moved.generation());
+        assertEquals(4, moved.method());
+        assertNotNull(moved.schedule());
+        assertEquals(PrayerTimesCalculator.FAJR, moved.shownPrayer());
+
+        WidgetSnapshot unscheduled = base.withSettings(21.4225, 39.8262, 3, OFFSETS, null, START);
+        assertEquals(8, unscheduled.generation());
+        assertNull(unscheduled.schedule());
+    }
+
+    @Test
+    public void restampMovesScheduleToNewGeneration() {
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START, 2, 0);
+        WidgetSnapshot pushed = snapshot(0, s);
+        WidgetSnapshot stored = pushed.restamp(12);
+        assertEquals(12, stored.generation());
+        assertNotNull(stored.schedule());
+        assertEquals(12, stored.schedule().settingsStamp());
+        assertTrue(stored.sameSettings(pushed));
+    }
+
+    @Test
+    public void noLocationIsNaN() {
+        WidgetSnapshot empty = new WidgetSnapshot(1, Double.NaN, Double.NaN, 2,
+                new int[PrayerTimesCalculator.PRAYER_COUNT], WidgetSnapshot.NO_PRAYER, -1, 0, null);
+        WidgetSnapshot read = WidgetSnapshot.fromBytes(empty.toBytes(), WidgetSnapshot.HEADER_BYTES);
+        assertNotNull(read);
+        assertFalse(read.hasLocation());
+        assertNull(read.schedule());
+    }
+
+    // The app writes the same layout from Dart; test/widget_snapshot_test.dart decodes this fixture too
+    @Test
+    public void decodesSharedFixture() throws Exception {
+        byte[] data = resource("widget_snapshot_v1.bin");
+        WidgetSnapshot read = WidgetSnapshot.fromBytes(data, data.length);
+        assertNotNull(read);
+        assertEquals(4, read.generation());
+        assertTrue(read.hasLocation());
+        assertEquals(21.4225, read.lat(), 0);
+        assertEquals(39.8262, read.lon(), 0);
+        assertEquals(4, read.method());
+        assertArrayEquals(new int[] {0, 0, 0, 0, 5}, read.offsets());
+        assertEquals(PrayerTimesCalculator.MAGHRIB, read.shownPrayer());
+        assertEquals(1_792_248_120_000L, read.shownTarget());
+        assertNotNull(read.schedule());
+        assertEquals(PrayerTimesCalculator.PRAYER_COUNT, read.schedule().size());
+        assertEquals(1_792_201_800_000L, read.schedule().epochAt(PrayerTimesCalculator.FAJR));
+    }
+
+    @Test
+    public void rejectsForeignAndTruncatedFiles() throws Exception {
+        File file = File.createTempFile("snapshot", ".bin");
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(new byte[128]);
+        }
+        try {
+            assertNull(WidgetSnapshot.read(file));
+        } finally {
+            file.delete();
+        }
+        PrayerSchedule s = PrayerSchedule.compute(59.3293, 18.0686, 3, OFFSETS, STOCKHOLM, START, 2, 7);
+        byte[] bytes = snapshot(7, s).toBytes();
+        assertNull(WidgetSnapshot.fromBytes(bytes, bytes.length - 8));
+        assertNull(WidgetSnapshot.read(new File(file.getPath() + ".missing")));
+    }
+
+    private static byte[] resource(String name) throws Exception {
+        try (InputStream in = WidgetSnapshotTest.class.getClassLoader().getResourceAsStream(name)) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[512];
+            int n;
+            while ((n = in.read(buf)) != -1) out.write(buf, 0, n);
+            return out.toByteArray();
+        }
+    }
+}
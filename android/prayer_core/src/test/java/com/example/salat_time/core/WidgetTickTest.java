@@ -0,0 +1,73 @@
+package com.example.salat_time.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.TimeZone;
+import org.junit.Test;
+
+public class WidgetTickTest {
+
+    private static final TimeZone ZONE = TimeZone.getTimeZone("Asia/Riyadh");
+    private static final long START = 1_792_195_200_000L; // 2026-10-17T00:00:00Z
+    private static final long DAY_MS = 86_400_000L;
+
+    private static PrayerSchedule schedule(int days) {
+        return PrayerSchedule.compute(21.4225, 39.8262, 4, new int[PrayerTimesCalculator.PRAYER_COUNT],
+                ZONE, START, days, 1);
+    }
+
+    @Test
+    public void refreshWhenNothingIsShownOrTheWindowRunsOut() {
+        WidgetTick tick = new WidgetTick();
+        assertFalse(tick.update(START, 1));
+        assertTrue(tick.needsRefresh());
+
+        tick.tracker().setSchedule(schedule(3));
+        assertTrue(tick.update(START, 1));
+        assertFalse(tick.needsRefresh());
+        // Last day of the window: still shown, but topped up
+        assertTrue(tick.update(START + 2 * DAY_MS, 1));
+        assertTrue(tick.needsRefresh());
+        assertFalse(tick.update(START + 4 * DAY_MS, 1));
+        assertTrue(tick.needsRefresh());
+    }
+
+    @Test
+    public void systemCountdownWakesOnlyAtBoundaries() {
+        WidgetTick tick = new WidgetTick();
+        PrayerSchedule s = schedule(3);
+        PrayerSchedule[] schedules = {s, null};
+        long now = START + 3_600_000;
+        long alarm = tick.planAlarm(schedules, now, ZONE, true);
+        assertEquals(Math.min(AlarmBoundary.next(s, now, ZONE), AlarmBoundary.next(null, now, ZONE)), alarm);
+        assertTrue(tick.alarmWakes());
+    }
+
+    @Test
+    public void textCountdownRedrawsWithoutWaking() {
+        WidgetTick tick = new WidgetTick();
+        PrayerSchedule s = schedule(3);
+        PrayerSchedule[] schedules = {s};
+        long target = s.epochAt(s.indexOfNext(START));
+        // Two hours out the text changes well before the prayer switch
+        long now = target - 2 * 3_600_000;
+        long alarm = tick.planAlarm(schedules, now, ZONE, false);
+        assertTrue(alarm > now && alarm < AlarmBoundary.next(s, now, ZONE));
+        assertFalse(tick.alarmWakes());
+        // A boundary that comes first still wakes the device
+        alarm = tick.planAlarm(schedules, target - PrayerSchedule.NEXT_BUFFER_MS - 400, ZONE, false);
+        assertEquals(target - PrayerSchedule.NEXT_BUFFER_MS, alarm);
+        assertTrue(tick.alarmWakes());
+    }
+
+    @Test
+    public void coversCountsWholeDaysAfterTheNextPrayer() {
+        PrayerSchedule s = schedule(3);
+        assertTrue(WidgetTick.covers(s, START, 2));
+        assertFalse(WidgetTick.covers(s, START, 3));
+        assertFalse(WidgetTick.covers(null, START, 0));
+        assertFalse(WidgetTick.covers(s, START + 4 * DAY_MS, 0));
+    }
+}
@@ -0,0 +1,16 @@
+#!/bin/sh
+# Records an api.aladhan.com /v1/timings response for every row of cases.csv, with the
+# parameters the widget uses (Shafi Asr, angle-based high-latitude rule, general shafaq).
+# Run from this directory and commit the JSON files it writes.
+set -eu
+
+grep -v '^#' cases.csv | while IFS=, read -r name lat lon zone date method; do
+    out="${name}_${method}_${date}.json"
+    [ -s "$out" ] && continue
+    extra=""
+    # 99 is the API's custom method; give it the engine's Fajr and Isha angles
+    if [ "$method" = "99" ]; then extra="&methodSettings=14.7,null,13.7"; fi
+    curl -fsS -o "$out" \
+        "https://api.aladhan.com/v1/timings/${date}?latitude=${lat}&longitude=${lon}&method=${method}${extra}&school=0&latitudeAdjustmentMethod=3&shafaq=general&timezonestring=${zone}"
+    sleep 1
+done
@@ -247,6 +247,9 @@ class PrayerTimesProvider extends ChangeNotifier {
     _prayerOffsets[prayer] = clamped;
     final prefs = await SharedPreferences.getInstance();
     await prefs.setString(_prefsKeyPerPrayerOffsets, jsonEncode(_prayerOffsets));
+    // The widget shifts its schedule by the difference and redraws right away
+    // ignore: unawaited_futures
+    WidgetDataService.pushOffsets(_prayerOffsets);
     notifyListeners();
   }
 
@@ -305,6 +308,9 @@ class PrayerTimesProvider extends ChangeNotifier {
           await prefs.setString(_prefsKeyLastAddress, address);
           await prefs.setDouble(_prefsKeyLastLat, lat);
           await prefs.setDouble(_prefsKeyLastLon, lon);
+          // The widget follows the new place even if the timings request below fails
+          // ignore: unawaited_futures
+          WidgetDataService.pushLocation(lat, lon);
           
           _lastUsedLocationSource = 'address';
           _lastUsedCity = address;
@@ -342,6 +348,8 @@ class PrayerTimesProvider extends ChangeNotifier {
       _calculationMethod = method;
       final prefs = await SharedPreferences.getInstance();
       await prefs.setInt(_prefsKeyCalculationMethod, method);
+      // ignore: unawaited_futures
+      WidgetDataService.pushMethod(method);
       
       // Refresh prayer times with new calculation method
       if (_lastUsedLocationSource == 'gps' && _currentPosition != null) {
@@ -375,6 +383,8 @@ class PrayerTimesProvider extends ChangeNotifier {
           await prefs.setString(_prefsKeyLastSource, 'gps');
           await prefs.setDouble(_prefsKeyLastLat, latitude);
           await prefs.setDouble(_prefsKeyLastLon, longitude);
+          // ignore: unawaited_futures
+          WidgetDataService.pushLocation(latitude, longitude);
           
           _lastUsedLocationSource = 'gps';
           _currentPosition = Position(
@@ -1,9 +1,10 @@
 import 'dart:async';
 import 'dart:convert';
+import 'package:flutter/services.dart';
 import 'package:home_widget/home_widget.dart';
 import 'package:shared_preferences/shared_preferences.dart';
-import 'package:http/http.dart' as http;
 import '../prayer_times_provider.dart';
+import 'widget_snapshot.dart';
 
 // TODO: FIX WIDGET DATA SERVICE - Next prayer logic not working correctly
 // Issues identified:
@@ -18,191 +19,115 @@ class WidgetDataService {
   static const String appGroupId = 'group.com.example.salat_time'; // iOS App Group (update in iOS setup)
   static const String androidWidgetProvider = 'com.example.salat_time.NextPrayerWidgetProvider';
 
-  static const String keyNextPrayerName = 'widget_next_prayer_name';
-  static const String keyNextPrayerCountdown = 'widget_next_prayer_countdown';
-  static const String keyNextPrayerEpoch = 'widget_next_prayer_epoch'; // milliseconds since epoch as String
-  static const String keyTimesJson = 'widget_times_json'; // JSON map of adjusted five prayer times HH:mm
+  static const String keyTelemetry = 'widget_telemetry'; // JSON snapshot written by the Android widget
 
-  // Compute next prayer using PrayerTimesProvider logic and persist for widgets
+  // Native handler in MainActivity (WidgetChannel.java); missing in background isolates and on iOS
+  static const MethodChannel _channel = MethodChannel('com.example.salat_time/widget');
+
+  // Hands the widget the current location, method and offsets. It keeps the schedule it
+  // holds while they are unchanged and otherwise builds the new one itself, or fetches it for
+  // methods its engine does not cover, so the app never downloads times for the widget.
   static Future<void> updateNextPrayerData([PrayerTimesProvider? provider]) async {
     try {
       final prefs = await SharedPreferences.getInstance();
-
-      // Access currently computed next prayer if available
-      String? nextName = provider?.nextPrayerName;
-  DateTime? nextTime = provider?.nextPrayerDateTime;
-
-      // If not available, attempt to fetch based on last known location
-      if (nextName == null || nextTime == null) {
-        // Fallback: try to re-fetch for current position (no-op if already set)
-        // This relies on provider having loaded coordinates earlier
-        // We don't call network here to avoid long background operations unnecessarily
-        // Try to compute from stored preferences without relying on provider
-        final lat = prefs.getDouble('lastLatitude');
-        final lon = prefs.getDouble('lastLongitude');
-        final method = prefs.getInt('calculationMethod') ?? 2;
-        if (lat != null && lon != null) {
-          final url = Uri.parse(
-              'https://api.aladhan.com/v1/timings/${DateTime.now().toString().split(' ')[0]}?latitude=$lat&longitude=$lon&method=$method');
-          try {
-            final resp = await http.get(url, headers: {'User-Agent': 'SalatTimeApp/1.0'});
-            if (resp.statusCode == 200) {
-              final data = json.decode(resp.body);
-              if (data['code'] == 200) {
-                final Map<String, dynamic> timings = Map<String, dynamic>.from(data['data']['timings']);
-                // Load per-prayer offsets
-                final offsetsJson = prefs.getString('perPrayerOffsets');
-                final Map<String, int> offsets = {
-                  'Imsak': 0,
-                  'Fajr': 0,
-                  'Sunrise': 0,
-                  'Dhuhr': 0,
-                  'Asr': 0,
-                  'Maghrib': 0,
-                  'Isha': 0,
-                };
-                if (offsetsJson != null) {
-                  try {
-                    final decoded = jsonDecode(offsetsJson);
-                    if (decoded is Map) {
-                      decoded.forEach((k, v) {
-                        if (offsets.containsKey(k)) {
-                          if (v is int) offsets[k] = v;
-                          if (v is String) offsets[k] = int.tryParse(v) ?? 0;
-                        }
-                      });
-                    }
-                  } catch (_) {}
-                }
-
-                final result = _computeNextFromTimings(timings, offsets);
-                nextName = result.$1;
-                nextTime = result.$2; // already UTC
-              }
-            }
-          } catch (_) {}
-        }
-      }
-
-      if (nextName == null || nextTime == null) {
-        await _saveForWidget('-', '--:--:--');
-        return;
+      final lat = prefs.getDouble('lastLatitude');
+      final lon = prefs.getDouble('lastLongitude');
+      if (lat == null || lon == null) return;
+      final method = provider?.calculationMethod ?? prefs.getInt('calculationMethod') ?? 2;
+      final Map<String, int> offsetMap = provider?.prayerOffsets ?? _storedOffsets(prefs);
+      // The widget stamps its own generation and decides whether the schedule must change
+      final snapshot = WidgetSnapshot(
+        generation: 0,
+        latitude: lat,
+        longitude: lon,
+        method: method,
+        offsets: [for (final p in WidgetSnapshot.prayers) offsetMap[p] ?? 0],
+        updatedAtMillis: DateTime.now().millisecondsSinceEpoch,
+      );
+
+      // Only the widget writes its snapshot file, under its own lock, so there is no second
+      // writer to race with. Without a channel (background isolate) nothing is sent; the app
+      // pushes again on its next call, and the widget refreshes from the settings it holds.
+      if (!await _push('pushSnapshot', snapshot.encode())) {
+        await HomeWidget.updateWidget(name: androidWidgetProvider, iOSName: 'NextPrayerWidget');
       }
-
-      // Normalize to UTC for consistent math across app/widget
-      final nextUtc = nextTime.toUtc();
-      final nowUtc = DateTime.now().toUtc();
-      Duration diff = nextUtc.difference(nowUtc);
-      if (diff.isNegative) diff = Duration.zero;
-      final countdown = _formatDuration(diff);
-
-      // Debug logging
+    } catch (_) {
+      // Silent fail; the widget keeps its last snapshot
       // ignore: avoid_print
-      print('[WidgetDataService] next=$nextName at UTC ${nextUtc.toIso8601String()} epoch=${nextUtc.millisecondsSinceEpoch} countdown=$countdown');
-
-      await prefs.setString(keyNextPrayerName, nextName);
-      await prefs.setString(keyNextPrayerCountdown, countdown);
-      // Store epoch as string to avoid platform int size limits; use UTC epoch
-      await prefs.setString(keyNextPrayerEpoch, nextUtc.millisecondsSinceEpoch.toString());
-
-      // Also persist today's adjusted five prayer times (HH:mm, 24h) so the native widget
-      // can compute the next prayer locally each minute without extra network calls.
-      final Map<String, String> adjustedTimes = {};
-      final Map<String, dynamic>? rawTimes = provider?.prayerTimes;
-      final Map<String, int> offs = provider?.prayerOffsets ?? const {
-        'Fajr': 0, 'Dhuhr': 0, 'Asr': 0, 'Maghrib': 0, 'Isha': 0,
-      };
-      if (rawTimes != null) {
-        final nowLocal = DateTime.now();
-        final todayLocal = DateTime(nowLocal.year, nowLocal.month, nowLocal.day);
-        for (final p in const ['Fajr','Dhuhr','Asr','Maghrib','Isha']) {
-          final v = rawTimes[p];
-          if (v == null) continue;
-          try {
-            final parts = v.toString().split(':');
-            if (parts.length < 2) continue;
-            var h = int.parse(parts[0].replaceAll(RegExp(r'[^0-9]'), ''));
-            final m = int.parse(parts[1].replaceAll(RegExp(r'[^0-9]'), ''));
-            // Build local DateTime, apply per-prayer offset, then format back to HH:mm 24h
-            var dt = todayLocal.add(Duration(hours: h, minutes: m));
-            dt = dt.add(Duration(minutes: offs[p] ?? 0));
-            h = dt.hour; // after offset
-            final mm = dt.minute;
-            adjustedTimes[p] = '${h.toString().padLeft(2, '0')}:${mm.toString().padLeft(2, '0')}' ;
-          } catch (_) {}
-        }
-        if (adjustedTimes.isNotEmpty) {
-          await prefs.setString(keyTimesJson, jsonEncode(adjustedTimes));
-          await HomeWidget.saveWidgetData<String>(keyTimesJson, jsonEncode(adjustedTimes));
-        }
-      }
+      print('[WidgetDataService] update failed; widget keeps its last snapshot');
+    }
+  }
 
-      await _saveForWidget(nextName, countdown,
-        epochMillis: nextUtc.millisecondsSinceEpoch);
-    } catch (_) {
-      // Silent fail; widgets will show dashes
+  // Deltas: the widget applies them to its own snapshot and re-renders at once. Offsets shift
+  // the stored schedule; location and method changes are recomputed natively when the widget's
+  // engine covers the method, otherwise the widget fetches the times itself.
+  static Future<bool> pushOffsets(Map<String, int> offsets) =>
+      _push('updateOffsets', [for (final p in WidgetSnapshot.prayers) offsets[p] ?? 0]);
+
+  static Future<bool> pushMethod(int method) => _push('updateMethod', method);
+
+  static Future<bool> pushLocation(double latitude, double longitude) =>
+      _push('updateLocation', {'latitude': latitude, 'longitude': longitude});
+
+  // Gives one placed widget (by appWidgetId) a location of its own, e.g. a travel city.
+  // Method and offsets default to the app's. Widgets in the same area share one schedule.
+  static Future<bool> configureWidget(int appWidgetId, double latitude, double longitude,
+          {int? method, Map<String, int>? offsets}) =>
+      _push('configureWidget', {
+        'appWidgetId': appWidgetId,
+        'latitude': latitude,
+        'longitude': longitude,
+        if (method != null) 'method': method,
+        if (offsets != null) 'offsets': [for (final p in WidgetSnapshot.prayers) offsets[p] ?? 0],
+      });
+
+  // The widget follows the app's location again
+  static Future<bool> clearWidget(int appWidgetId) => _push('clearWidget', appWidgetId);
+
+  // False when the native side is unavailable or rejected the call
+  static Future<bool> _push(String method, Object arguments) async {
+    try {
+      await _channel.invokeMethod<int?>(method, arguments);
+      return true;
+    } on MissingPluginException {
+      return false;
+    } on PlatformException catch (e) {
       // ignore: avoid_print
-      print('[WidgetDataService] update failed; saving dashes');
-      await _saveForWidget('-', '--:--:--');
+      print('[WidgetDataService] $method rejected: ${e.code} ${e.message}');
+      return false;
     }
   }
 
-  static (String?, DateTime?) _computeNextFromTimings(Map<String, dynamic> times, Map<String, int> offsets) {
-    // Use local wall-clock for constructing times, convert to UTC for comparison/storage
-    final nowUtc = DateTime.now().toUtc();
-    final nowLocal = DateTime.now();
-    final todayLocal = DateTime(nowLocal.year, nowLocal.month, nowLocal.day);
-    String? nextName;
-    DateTime? nextTime;
-    
-    // Only consider the five daily prayers for the widget's "next"
-    const order = ['Fajr','Dhuhr','Asr','Maghrib','Isha'];
-    
-    // Find first prayer today that hasn't passed
-    for (final prayer in order) {
-      final value = times[prayer];
-      if (value == null) continue;
+  static Map<String, int> _storedOffsets(SharedPreferences prefs) {
+    final Map<String, int> offsets = {
+      'Imsak': 0,
+      'Fajr': 0,
+      'Sunrise': 0,
+      'Dhuhr': 0,
+      'Asr': 0,
+      'Maghrib': 0,
+      'Isha': 0,
+    };
+    final offsetsJson = prefs.getString('perPrayerOffsets');
+    if (offsetsJson != null) {
       try {
-        final parts = value.toString().split(':');
-        if (parts.length < 2) continue;
-        final h = int.parse(parts[0]);
-        // Some APIs return suffix like "05:12 (EDT)", keep only leading digits for minutes
-        final m = int.parse(parts[1].replaceAll(RegExp(r'[^0-9]'), ''));
-        var dtLocal = todayLocal.add(Duration(hours: h, minutes: m));
-        dtLocal = dtLocal.add(Duration(minutes: offsets[prayer] ?? 0));
-        final dtUtc = dtLocal.toUtc();
-        
-        // Use a small buffer (30 seconds) to avoid edge cases with timing
-        if (dtUtc.isAfter(nowUtc.add(const Duration(seconds: 30)))) {
-          nextName = prayer;
-          nextTime = dtUtc;
-          break;
+        final decoded = jsonDecode(offsetsJson);
+        if (decoded is Map) {
+          decoded.forEach((k, v) {
+            if (offsets.containsKey(k)) {
+              if (v is int) offsets[k] = v;
+              if (v is String) offsets[k] = int.tryParse(v) ?? 0;
+            }
+          });
         }
       } catch (_) {}
     }
-    
-    // If no prayer found today, next is tomorrow's Fajr
-    if (nextName == null) {
-      final fajr = times['Fajr']?.toString();
-      if (fajr != null) {
-        try {
-          final parts = fajr.split(':');
-          if (parts.length >= 2) {
-            final h = int.parse(parts[0]);
-            final m = int.parse(parts[1].replaceAll(RegExp(r'[^0-9]'), ''));
-            var tomorrowLocal = todayLocal.add(const Duration(days: 1));
-            var dtLocal = tomorrowLocal.add(Duration(hours: h, minutes: m));
-            dtLocal = dtLocal.add(Duration(minutes: offsets['Fajr'] ?? 0));
-            nextName = 'Fajr';
-            nextTime = dtLocal.toUtc();
-          }
-        } catch (_) {}
-      }
-    }
-    return (nextName, nextTime);
+    return offsets;
   }
 
-  // Visible for unit tests: same logic as _computeNextFromTimings but with injectable nowUtc/nowLocal
+  static final RegExp _nonDigits = RegExp(r'[^0-9]');
+
+  // Visible for unit tests: next prayer from one day of timings, with injectable nowUtc/nowLocal
   static (String?, DateTime?) computeNextFromTimingsForTest(
     Map<String, dynamic> times,
     Map<String, int> offsets, {
@@ -220,7 +145,7 @@ class WidgetDataService {
         final parts = value.toString().split(':');
         if (parts.length < 2) continue;
         final h = int.parse(parts[0]);
-        final m = int.parse(parts[1].replaceAll(RegExp(r'[^0-9]'), ''));
+        final m = int.parse(parts[1].replaceAll(_nonDigits, ''));
         var dtLocal = todayLocal.add(Duration(hours: h, minutes: m));
         dtLocal = dtLocal.add(Duration(minutes: offsets[prayer] ?? 0));
         final dtUtc = dtLocal.toUtc();
@@ -238,7 +163,7 @@ class WidgetDataService {
           final parts = fajr.split(':');
           if (parts.length >= 2) {
             final h = int.parse(parts[0]);
-            final m = int.parse(parts[1].replaceAll(RegExp(r'[^0-9]'), ''));
+            final m = int.parse(parts[1].replaceAll(_nonDigits, ''));
             var tomorrowLocal = todayLocal.add(const Duration(days: 1));
             var dtLocal = tomorrowLocal.add(Duration(hours: h, minutes: m));
             dtLocal = dtLocal.add(Duration(minutes: offsets['Fajr'] ?? 0));
@@ -251,19 +176,16 @@ class WidgetDataService {
     return (nextName, nextTime);
   }
 
-  static String _formatDuration(Duration d) {
-    final hours = d.inHours;
-    final minutes = d.inMinutes.remainder(60).toString().padLeft(2, '0');
-    final seconds = d.inSeconds.remainder(60).toString().padLeft(2, '0');
-    return '${hours.toString().padLeft(2, '0')}:$minutes:$seconds';
-  }
-
-  static Future<void> _saveForWidget(String name, String countdown, {int? epochMillis}) async {
-    await HomeWidget.saveWidgetData<String>(keyNextPrayerName, name);
-    await HomeWidget.saveWidgetData<String>(keyNextPrayerCountdown, countdown);
-    if (epochMillis != null) {
-      await HomeWidget.saveWidgetData<String>(keyNextPrayerEpoch, epochMillis.toString());
+  // Widget cost counters and histograms recorded natively (Android only); null until the widget has run.
+  // Histogram arrays are log2 buckets: index i counts values in [2^(i-1), 2^i).
+  static Future<Map<String, dynamic>?> getWidgetTelemetry() async {
+    try {
+      final raw = await HomeWidget.getWidgetData<String>(keyTelemetry);
+      if (raw == null) return null;
+      final decoded = jsonDecode(raw);
+      return decoded is Map<String, dynamic> ? decoded : null;
+    } catch (_) {
+      return null;
     }
-    await HomeWidget.updateWidget(name: androidWidgetProvider, iOSName: 'NextPrayerWidget');
   }
 }
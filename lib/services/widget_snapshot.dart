@@ -0,0 +1,107 @@
+import 'dart:typed_data';
+
+// Everything the Android widget needs in one fixed-layout binary file, which only the widget
+// writes; the app sends it over the widget channel. Same layout as
+// android/prayer_core/.../WidgetSnapshot.java (little endian):
+//
+//  0 magic int          4 version int        8 generation int     12 method int
+// 16 latitude double   24 longitude double  32 offsets int[5] (Fajr..Isha)
+// 52 shown prayer int  56 shown target long 64 updated at long
+// 72 schedule key long 80 schedule stamp int 84 count int       88 epochs long[count]
+//
+// A schedule is only used while its stamp equals the generation, so bumping the generation
+// on a settings change retires the widget's old schedule in the same write.
+class WidgetSnapshot {
+  static const List<String> prayers = ['Fajr', 'Dhuhr', 'Asr', 'Maghrib', 'Isha'];
+  static const int noPrayer = -1;
+
+  static const int _magic = 0x534c5432; // "SLT2"
+  static const int _version = 1;
+  static const int _headerBytes = 88;
+  static const int _maxEpochs = 366 * 5;
+
+  final int generation;
+  final double latitude;
+  final double longitude;
+  final int method;
+  final List<int> offsets;
+  final int shownPrayer;
+  final int shownTargetMillis;
+  final int updatedAtMillis;
+  final int scheduleKey;
+  final int scheduleStamp;
+  final List<int> epochs;
+
+  const WidgetSnapshot({
+    required this.generation,
+    required this.latitude,
+    required this.longitude,
+    required this.method,
+    required this.offsets,
+    this.shownPrayer = noPrayer,
+    this.shownTargetMillis = -1,
+    required this.updatedAtMillis,
+    this.scheduleKey = 0,
+    this.scheduleStamp = 0,
+    this.epochs = const [],
+  });
+
+  bool sameSettings(double lat, double lon, int method, List<int> offsets) {
+    if (latitude != lat || longitude != lon || this.method != method) return false;
+    for (var i = 0; i < prayers.length; i++) {
+      if (this.offsets[i] != offsets[i]) return false;
+    }
+    return true;
+  }
+
+  Uint8List encode() {
+    final data = ByteData(_headerBytes + epochs.length * 8);
+    data.setInt32(0, _magic, Endian.little);
+    data.setInt32(4, _version, Endian.little);
+    data.setInt32(8, generation, Endian.little);
+    data.setInt32(12, method, Endian.little);
+    data.setFloat64(16, latitude, Endian.little);
+    data.setFloat64(24, longitude, Endian.little);
+    for (var i = 0; i < prayers.length; i++) {
+      data.setInt32(32 + i * 4, offsets[i], Endian.little);
+    }
+    data.setInt32(52, shownPrayer, Endian.little);
+    data.setInt64(56, shownTargetMillis, Endian.little);
+    data.setInt64(64, updatedAtMillis, Endian.little);
+    data.setInt64(72, scheduleKey, Endian.little);
+    data.setInt32(80, scheduleStamp, Endian.little);
+    data.setInt32(84, epochs.length, Endian.little);
+    for (var i = 0; i < epochs.length; i++) {
+      data.setInt64(_headerBytes + i * 8, epochs[i], Endian.little);
+    }
+    return data.buffer.asUint8List();
+  }
+
+  // Returns null for bytes that are not a snapshot in this version
+  static WidgetSnapshot? decode(Uint8List bytes) {
+    if (bytes.length < _headerBytes) return null;
+    final data = ByteData.sublistView(bytes);
+    if (data.getInt32(0, Endian.little) != _magic || data.getInt32(4, Endian.little) != _version) return null;
+    final count = data.getInt32(84, Endian.little);
+    if (count < 0 || count > _maxEpochs || count % prayers.length != 0 ||
+        bytes.length < _headerBytes + count * 8) {
+      return null;
+    }
+    return WidgetSnapshot(
+      generation: data.getInt32(8, Endian.little),
+      method: data.getInt32(12, Endian.little),
+      latitude: data.getFloat64(16, Endian.little),
+      longitude: data.getFloat64(24, Endian.little),
+      offsets: List.generate(prayers.length, (i) => data.getInt32(32 + i * 4, Endian.little)),
+      shownPrayer: data.getInt32(52, Endian.little),
+      shownTargetMillis: data.getInt64(56, Endian.little),
+      updatedAtMillis: data.getInt64(64, Endian.little),
+      scheduleKey: data.getInt64(72, Endian.little),
+      scheduleStamp: data.getInt32(80, Endian.little),
+      epochs: List.generate(count, (i) => data.getInt64(_headerBytes + i * 8, Endian.little)),
+    );
+  }
+
+  // Index into [prayers], or [noPrayer] for names the widget does not show (Sunrise, Imsak)
+  static int prayerIndex(String? name) => prayers.indexOf(name ?? '');
+}
@@ -0,0 +1,72 @@
+import 'dart:io';
+import 'dart:typed_data';
+import 'package:flutter_test/flutter_test.dart';
+import 'package:salat_time/services/widget_snapshot.dart';
+
+void main() {
+  group('WidgetSnapshot', () {
+    test('encode/decode round trip', () {
+      const snapshot = WidgetSnapshot(
+        generation: 3,
+        latitude: 59.3293,
+        longitude: 18.0686,
+        method: 99,
+        offsets: [2, 0, -1, 3, 0],
+        shownPrayer: 2,
+        shownTargetMillis: 1792238400000,
+        updatedAtMillis: 1792220000000,
+        scheduleStamp: 3,
+        epochs: [1792209000000, 1792227000000, 1792238400000, 1792248000000, 1792254000000],
+      );
+      final bytes = snapshot.encode();
+      expect(bytes.length, 88 + 5 * 8);
+
+      final decoded = WidgetSnapshot.decode(bytes)!;
+      expect(decoded.generation, 3);
+      expect(decoded.latitude, 59.3293);
+      expect(decoded.longitude, 18.0686);
+      expect(decoded.method, 99);
+      expect(decoded.offsets, [2, 0, -1, 3, 0]);
+      expect(decoded.shownPrayer, 2);
+      expect(decoded.shownTargetMillis, 1792238400000);
+      expect(decoded.scheduleStamp, 3);
+      expect(decoded.epochs, snapshot.epochs);
+    });
+
+    // Written by the Java side; WidgetSnapshotTest in prayer_core decodes the same file
+    test('decodes the fixture shared with the Android widget', () {
+      final bytes = File('android/prayer_core/src/test/resources/widget_snapshot_v1.bin').readAsBytesSync();
+      final decoded = WidgetSnapshot.decode(bytes)!;
+      expect(decoded.generation, 4);
+      expect(decoded.latitude, 21.4225);
+      expect(decoded.longitude, 39.8262);
+      expect(decoded.method, 4);
+      expect(decoded.offsets, [0, 0, 0, 0, 5]);
+      expect(decoded.shownPrayer, WidgetSnapshot.prayers.indexOf('Maghrib'));
+      expect(decoded.shownTargetMillis, 1792248120000);
+      expect(decoded.epochs.first, 1792201800000);
+      expect(decoded.encode(), bytes);
+    });
+
+    test('rejects foreign and truncated bytes', () {
+      expect(WidgetSnapshot.decode(Uint8List(128)), isNull);
+      const snapshot = WidgetSnapshot(
+        generation: 1,
+        latitude: 0,
+        longitude: 0,
+        method: 2,
+        offsets: [0, 0, 0, 0, 0],
+        updatedAtMillis: 0,
+        epochs: [1, 2, 3, 4, 5],
+      );
+      final bytes = snapshot.encode();
+      expect(WidgetSnapshot.decode(Uint8List.sublistView(bytes, 0, bytes.length - 8)), isNull);
+    });
+
+    test('prayerIndex ignores Sunrise and Imsak', () {
+      expect(WidgetSnapshot.prayerIndex('Asr'), 2);
+      expect(WidgetSnapshot.prayerIndex('Sunrise'), WidgetSnapshot.noPrayer);
+      expect(WidgetSnapshot.prayerIndex(null), WidgetSnapshot.noPrayer);
+    });
+  });
+}